@@ -26,6 +26,27 @@ rpc="";
 programs="./main_net_programs.json";
 numThreads=5;
 baseDelayMillis=200;
+requestsPerSecond="";
+maxRequestsPerSecond="";
+maxInFlight="";
+hostRequestsPerSecond="";
+hostMaxInFlight="";
+parseConcurrency="";
+generateConcurrency="";
+writeConcurrency="";
+queueCapacity="";
+manifest="";
+syncOutput="true";
+idlCache="";
+idlJson="true";
+offline="false";
+wideIntegersAsLongs="false";
+packedOptionals="false";
+lazyStrings="false";
+internStrings="";
+padding="keep";
+paddingFields="";
+slices="copy";
 
 for arg in "$@"
 do
@@ -61,12 +82,42 @@ do
 
       bdm | baseDelayMillis) baseDelayMillis="$val";;
       bp | basePackageName) basePackageName="$val";;
+      gc | generateConcurrency) generateConcurrency="$val";;
+      hmif | hostMaxInFlight) hostMaxInFlight="$val";;
+      hrps | hostRequestsPerSecond) hostRequestsPerSecond="$val";;
+      ic | idlCache) idlCache="$val";;
+      ij | idlJson) idlJson="$val";;
+      is | internStrings) internStrings="$val";;
+      ls | lazyStrings) lazyStrings="$val";;
+      m | manifest) manifest="$val";;
+      mif | maxInFlight) maxInFlight="$val";;
+      mrps | maxRequestsPerSecond) maxRequestsPerSecond="$val";;
       mn | moduleName) outputModuleName="$val";;
       nt | numThreads) numThreads="$val";;
+      offline)
+        case "$val" in
+          1|true|*offline) offline="true" ;;
+          0|false) offline="false" ;;
+          *)
+            printf "'%soffline=[true|false]' or '%soffline' not '%s'.\n" "--" "--" "$arg";
+            exit 2;
+          ;;
+        esac
+        ;;
       p | programs) programs="$val";;
+      pad | padding) padding="$val";;
+      pc | parseConcurrency) parseConcurrency="$val";;
+      pf | paddingFields) paddingFields="$val";;
+      po | packedOptionals) packedOptionals="$val";;
+      qc | queueCapacity) queueCapacity="$val";;
       rpc) rpc="$val";;
+      rps | requestsPerSecond) requestsPerSecond="$val";;
       sd | sourceDirectory) sourceDirectory="$val";;
+      sl | slices) slices="$val";;
+      so | syncOutput) syncOutput="$val";;
       tl | tabLength) tabLength="$val";;
+      wc | writeConcurrency) writeConcurrency="$val";;
+      wil | wideIntegersAsLongs) wideIntegersAsLongs="$val";;
 
       *)
           printf "Unsupported flag '%s' [key=%s] [val=%s].\n" "$arg" "$key" "$val";
@@ -95,12 +146,34 @@ readonly javaExe="$projectDirectory/build/$vcsRef/bin/java"
 javaArgs+=(
   "-D$moduleName.baseDelayMillis=$baseDelayMillis"
   "-D$moduleName.basePackageName=$basePackageName"
+  "-D$moduleName.generateConcurrency=$generateConcurrency"
+  "-D$moduleName.generatorVersion=$vcsRef"
+  "-D$moduleName.hostMaxInFlight=$hostMaxInFlight"
+  "-D$moduleName.hostRequestsPerSecond=$hostRequestsPerSecond"
+  "-D$moduleName.idlCache=$idlCache"
+  "-D$moduleName.idlJson=$idlJson"
+  "-D$moduleName.internStrings=$internStrings"
+  "-D$moduleName.lazyStrings=$lazyStrings"
+  "-D$moduleName.manifest=$manifest"
+  "-D$moduleName.maxInFlight=$maxInFlight"
+  "-D$moduleName.maxRequestsPerSecond=$maxRequestsPerSecond"
   "-D$moduleName.moduleName=$outputModuleName"
   "-D$moduleName.numThreads=$numThreads"
+  "-D$moduleName.offline=$offline"
+  "-D$moduleName.packedOptionals=$packedOptionals"
+  "-D$moduleName.padding=$padding"
+  "-D$moduleName.paddingFields=$paddingFields"
+  "-D$moduleName.parseConcurrency=$parseConcurrency"
   "-D$moduleName.programs=$programs"
+  "-D$moduleName.queueCapacity=$queueCapacity"
+  "-D$moduleName.requestsPerSecond=$requestsPerSecond"
   "-D$moduleName.rpc=$rpc"
+  "-D$moduleName.slices=$slices"
   "-D$moduleName.sourceDirectory=$sourceDirectory"
+  "-D$moduleName.syncOutput=$syncOutput"
   "-D$moduleName.tabLength=$tabLength"
+  "-D$moduleName.wideIntegersAsLongs=$wideIntegersAsLongs"
+  "-D$moduleName.writeConcurrency=$writeConcurrency"
   '-m' "$moduleName/$mainClass"
 )
 
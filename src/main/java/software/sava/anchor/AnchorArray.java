@@ -7,7 +7,6 @@ import systems.comodal.jsoniter.ValueType;
 
 import java.math.BigInteger;
 import java.util.List;
-import java.util.Map;
 
 import static software.sava.anchor.AnchorStruct.generateRecord;
 import static software.sava.anchor.AnchorType.*;
@@ -96,13 +95,13 @@ public record AnchorArray(AnchorTypeContext genericType,
   }
 
   @Override
-  public boolean isFixedLength(final Map<String, AnchorNamedType> definedTypes) {
-    return genericType.isFixedLength(definedTypes);
+  public boolean isFixedLength(final GenSrcContext genSrcContext) {
+    return genericType.isFixedLength(genSrcContext);
   }
 
   @Override
   public int serializedLength(final GenSrcContext genSrcContext) {
-    return genericType.isFixedLength(genSrcContext.definedTypes())
+    return genericType.isFixedLength(genSrcContext)
         ? (depth * numElements) * genericType.serializedLength(genSrcContext, genSrcContext.isAccount(genericType.typeName()))
         : genericType.serializedLength(genSrcContext);
   }
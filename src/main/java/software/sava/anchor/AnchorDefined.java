@@ -6,7 +6,8 @@ import systems.comodal.jsoniter.ContextFieldBufferPredicate;
 import systems.comodal.jsoniter.JsonIterator;
 import systems.comodal.jsoniter.ValueType;
 
-import java.util.Map;
+import java.util.Arrays;
+import java.util.List;
 
 import static software.sava.anchor.AnchorNamedTypeParser.cleanName;
 import static software.sava.anchor.AnchorUtil.camelCase;
@@ -130,17 +131,16 @@ public record AnchorDefined(String typeName) implements AnchorReferenceTypeConte
   }
 
   @Override
-  public boolean isFixedLength(final Map<String, AnchorNamedType> definedTypes) {
-    final var definedType = definedTypes.get(typeName);
-    if (definedType == null) {
-      throw new IllegalStateException("Failed to find defined type " + typeName);
-    }
-    return definedType.type().isFixedLength(definedTypes);
+  public boolean isFixedLength(final GenSrcContext genSrcContext) {
+    return genSrcContext.layout(typeName).fixedLength();
   }
 
   @Override
   public int serializedLength(final GenSrcContext genSrcContext) {
-    return genSrcContext.definedTypes().get(typeName).type().serializedLength(genSrcContext, genSrcContext.isAccount(typeName));
+    final var layout = genSrcContext.layout(typeName);
+    return layout.fixedLength()
+        ? layout.serializedLength()
+        : genSrcContext.definedTypes().get(typeName).type().serializedLength(genSrcContext, genSrcContext.isAccount(typeName));
   }
 
   @Override
@@ -158,5 +158,14 @@ public record AnchorDefined(String typeName) implements AnchorReferenceTypeConte
         camelCase(varName, true), typeName(), varName, genSrcContext.tab(), offsetVarName, varName, optional ? "writeOptional" : "write"
     ));
     genSrcContext.addImport(Filter.class);
+    genSrcContext.addImport(Arrays.class);
+    AnchorPrimitive.appendMatches(
+        genSrcContext, builder, typeName(), varName,
+        String.format("final byte[] _bytes = %s.%s();", varName, optional ? "writeOptional" : "write"),
+        List.of(
+            String.format("_data.length >= %s + _bytes.length", offsetVarName),
+            String.format("Arrays.equals(_data, %s, %s + _bytes.length, _bytes, 0, _bytes.length)", offsetVarName, offsetVarName)
+        )
+    );
   }
 }
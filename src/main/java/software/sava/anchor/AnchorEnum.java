@@ -5,7 +5,6 @@ import software.sava.core.rpc.Filter;
 import systems.comodal.jsoniter.JsonIterator;
 
 import java.util.List;
-import java.util.Map;
 
 import static software.sava.anchor.AnchorNamedTypeParser.parseUpperList;
 import static software.sava.anchor.AnchorSourceGenerator.removeBlankLines;
@@ -28,7 +27,7 @@ public record AnchorEnum(List<AnchorNamedType> values) implements AnchorDefinedT
   }
 
   @Override
-  public boolean isFixedLength(final Map<String, AnchorNamedType> definedTypes) {
+  public boolean isFixedLength(final GenSrcContext genSrcContext) {
     return values.stream().noneMatch(t -> t.type() != null);
   }
 
@@ -52,6 +51,10 @@ public record AnchorEnum(List<AnchorNamedType> values) implements AnchorDefinedT
         AnchorUtil.camelCase(varName, true), typeName(), varName, serializeCode.indent(genSrcContext.tabLength())
     ));
     genSrcContext.addImport(Filter.class);
+    AnchorPrimitive.appendMatches(genSrcContext, builder, typeName(), varName, null, List.of(
+        String.format("_data.length > %s", offsetVarName),
+        String.format("_data[%s] == (byte) %s.ordinal()", offsetVarName, varName)
+    ));
   }
 
   private String generateSimpleEnum(final GenSrcContext genSrcContext,
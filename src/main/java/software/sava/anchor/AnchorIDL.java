@@ -2,12 +2,18 @@ package software.sava.anchor;
 
 import software.sava.core.accounts.ProgramDerivedAddress;
 import software.sava.core.accounts.PublicKey;
+import software.sava.core.borsh.Borsh;
+import software.sava.core.encoding.ByteUtil;
+import software.sava.core.programs.Discriminator;
+import software.sava.core.tx.Instruction;
 import software.sava.rpc.json.PublicKeyEncoding;
 import systems.comodal.jsoniter.FieldBufferPredicate;
 import systems.comodal.jsoniter.JsonIterator;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -31,11 +37,29 @@ public record AnchorIDL(PublicKey address,
                         List<String> docs,
                         byte[] json) {
 
+  private static final int STREAM_BUFFER_SIZE = 65_536;
+
   public static AnchorIDL parseIDL(final byte[] json) {
+    return parseIDL(json, true);
+  }
+
+  // The json is only referenced by the returned IDL if retainJson is true.
+  public static AnchorIDL parseIDL(final byte[] json, final boolean retainJson) {
     final var parser = new Parser();
     try (final var ji = JsonIterator.parse(json)) {
       ji.testObject(parser);
-      return parser.createIDL(json);
+      return parser.createIDL(retainJson ? json : null);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // Parses the IDL incrementally from the stream, the json is not retained.
+  public static AnchorIDL parseIDL(final InputStream json) {
+    final var parser = new Parser();
+    try (final var ji = JsonIterator.parse(json, STREAM_BUFFER_SIZE)) {
+      ji.testObject(parser);
+      return parser.createIDL(null);
     } catch (final IOException e) {
       throw new RuntimeException(e);
     }
@@ -122,54 +146,491 @@ public record AnchorIDL(PublicKey address,
       error.generateSource(genSrcContext, errorClassBuilder);
     }
 
-    final var out = new StringBuilder(4_096);
-    genSrcContext.appendPackage(out);
+    final var header = new StringBuilder(1_024);
+    genSrcContext.appendPackage(header);
 
     genSrcContext.addImport(ProgramError.class.getName());
-    genSrcContext.appendImports(out);
+    genSrcContext.appendImports(header);
 
     final var className = genSrcContext.programName() + "Error";
-    out.append(String.format("""
-        
-        public sealed interface %s extends ProgramError permits
-        """, className));
+    final var out = new SourceWriter(genSrcContext.tab(), header.length() + errorClassBuilder.length() + 4_096);
+    out.append(header);
+    out.newLine();
+    out.append("public sealed interface ").append(className).line(" extends ProgramError permits");
 
-    final var tab = genSrcContext.tab();
+    out.indent().indent();
     final var iterator = errors.iterator();
     for (AnchorErrorRecord error; ; ) {
       error = iterator.next();
-      out.append(tab).append(tab).append(className).append('.').append(error.className());
+      out.append(className).append('.').append(error.className());
       if (iterator.hasNext()) {
-        out.append(",\n");
+        out.line(",");
       } else {
-        out.append(" {\n\n");
+        out.line(" {").newLine();
         break;
       }
     }
+    out.outdent();
 
-    out.append(tab).append(String.format("static %s getInstance(final int errorCode) {\n", className));
-    out.append(tab).append(tab).append("return switch (errorCode) {\n");
-
+    out.append("static ").append(className).line(" getInstance(final int errorCode) {");
+    out.indent().line("return switch (errorCode) {");
+    out.indent();
     for (final var error : errors) {
-      out.append(tab).append(tab).append(tab);
-      out.append(String.format("case %d -> %s.INSTANCE;\n", error.code(), error.className()));
+      out.append("case ").append(error.code()).append(" -> ").append(error.className()).line(".INSTANCE;");
     }
-    out.append(tab).append(tab).append(tab);
-    out.append(String.format("""
-        default -> throw new IllegalStateException("Unexpected %s error code: " + errorCode);
-        """, genSrcContext.programName()));
-    out.append(tab).append(tab).append("};\n");
-    out.append(tab).append("}\n");
-    out.append(errorClassBuilder.toString().indent(genSrcContext.tabLength()));
-    out.append("}");
-    return removeBlankLines(out.toString());
+    out.append("default -> throw new IllegalStateException(\"Unexpected ")
+        .append(genSrcContext.programName())
+        .line(" error code: \" + errorCode);");
+    out.outdent().line("};");
+    out.outdent().line("}");
+    out.append(errorClassBuilder).endLine();
+    return out.outdent().append('}').toString();
+  }
+
+  private List<AnchorNamedType> accountTypes() {
+    return accounts.values().stream()
+        .filter(account -> (account.type() == null ? types.get(account.name()) : account).type() instanceof AnchorStruct)
+        .sorted(Comparator.comparing(AnchorNamedType::name))
+        .toList();
+  }
+
+  public String generateAccountInterfaceSource(final GenSrcContext genSrcContext) {
+    final var accountTypes = accountTypes();
+    if (accountTypes.isEmpty()) {
+      return null;
+    }
+    final var out = new StringBuilder(1_024);
+    out.append("package ").append(genSrcContext.typePackage()).append(";\n\n");
+    genSrcContext.addImport(PublicKey.class);
+    genSrcContext.addImport(Borsh.class);
+    genSrcContext.addImport(Discriminator.class);
+    genSrcContext.appendImports(out);
+
+    final var writer = new SourceWriter(genSrcContext.tab(), 1_024);
+    writer.append(out).newLine();
+    writer.append("public sealed interface ").append(genSrcContext.accountInterface()).line(" extends Borsh permits");
+    writer.indent().indent();
+    for (final var iterator = accountTypes.iterator(); ; ) {
+      writer.append(iterator.next().name());
+      if (iterator.hasNext()) {
+        writer.line(",");
+      } else {
+        writer.line(" {").newLine();
+        break;
+      }
+    }
+    writer.outdent();
+    writer.line("PublicKey _address();").newLine();
+    writer.line("Discriminator discriminator();");
+    return writer.outdent().append('}').toString();
+  }
+
+  // Events which are also accounts are decoded by the account record, which implements both interfaces.
+  List<AnchorNamedType> eventTypes() {
+    return eventTypes(accountNames());
+  }
+
+  private List<AnchorNamedType> eventTypes(final Set<String> accountNames) {
+    return events.stream()
+        .filter(event -> accountNames.contains(event.name())
+            || (event.type() == null ? types.get(event.name()) : event).type() instanceof AnchorStruct)
+        .sorted(Comparator.comparing(AnchorNamedType::name))
+        .toList();
+  }
+
+  private Set<String> accountNames() {
+    return accountTypes().stream().map(AnchorNamedType::name).collect(Collectors.toUnmodifiableSet());
+  }
+
+  static Discriminator eventDiscriminator(final AnchorNamedType event) {
+    final var discriminator = event.discriminator();
+    return discriminator == null ? AnchorUtil.toEventDiscriminator(event.name()) : discriminator;
+  }
+
+  // Legacy IDLs do not declare account discriminators, they are derived from the account name.
+  static Discriminator accountDiscriminator(final AnchorNamedType account) {
+    final var discriminator = account.discriminator();
+    return discriminator == null ? AnchorUtil.toAccountDiscriminator(account.name()) : discriminator;
+  }
+
+  // Custom discriminators which are not eight bytes cannot be compared as a long.
+  static boolean hasLongDiscriminator(final AnchorNamedType account) {
+    return accountDiscriminator(account).data().length == AnchorUtil.DISCRIMINATOR_LENGTH;
+  }
+
+  public String generateEventInterfaceSource(final GenSrcContext genSrcContext) {
+    final var eventTypes = eventTypes();
+    if (eventTypes.isEmpty()) {
+      return null;
+    }
+    final var out = new StringBuilder(1_024);
+    out.append("package ").append(genSrcContext.typePackage()).append(";\n\n");
+    genSrcContext.addImport(Borsh.class);
+    genSrcContext.appendImports(out);
+
+    final var writer = new SourceWriter(genSrcContext.tab(), 1_024);
+    writer.append(out).newLine();
+    writer.append("public sealed interface ").append(genSrcContext.eventInterface()).line(" extends Borsh permits");
+    writer.indent().indent();
+    for (final var iterator = eventTypes.iterator(); ; ) {
+      writer.append(iterator.next().name());
+      if (iterator.hasNext()) {
+        writer.line(",");
+      } else {
+        writer.line(" {");
+        break;
+      }
+    }
+    return writer.outdent().outdent().append('}').toString();
+  }
+
+  public String generateEventsSource(final GenSrcContext genSrcContext) {
+    final var accountNames = accountNames();
+    final var eventTypes = eventTypes(accountNames);
+    if (eventTypes.isEmpty()) {
+      return null;
+    }
+    final var eventInterface = genSrcContext.eventInterface();
+    genSrcContext.addDefinedImport(eventInterface);
+    genSrcContext.addImport(Discriminator.class);
+    genSrcContext.addImport(PublicKey.class);
+    genSrcContext.addImport(List.class);
+    genSrcContext.addImport(Consumer.class);
+    genSrcContext.addStaticImport(Discriminator.class, "toDiscriminator");
+    genSrcContext.addStaticImport(ProgramLogs.class, "forEachProgramData");
+
+    final var className = genSrcContext.programName() + "Events";
+    final var out = new SourceWriter(genSrcContext.tab(), 4_096);
+    out.append("public final class ").append(className).line(" {").newLine();
+    out.indent();
+
+    final int numEvents = eventTypes.size();
+    final var discriminators = new Discriminator[numEvents];
+    final var constants = new String[numEvents];
+    final var results = new String[numEvents];
+    for (int i = 0; i < numEvents; ++i) {
+      final var event = eventTypes.get(i);
+      final var name = event.name();
+      genSrcContext.addDefinedImport(name);
+      final var discriminator = eventDiscriminator(event);
+      final var constant = AnchorUtil.snakeCase(AnchorUtil.camelCase(name, false), true) + "_DISCRIMINATOR";
+      out.append("public static final Discriminator ").append(constant).append(" = toDiscriminator(");
+      final var discriminatorData = discriminator.toIntArray();
+      for (int b = 0; b < discriminatorData.length; ++b) {
+        if (b > 0) {
+          out.append(", ");
+        }
+        out.append(discriminatorData[b]);
+      }
+      out.line(");");
+      discriminators[i] = discriminator;
+      constants[i] = constant;
+      // Account records read the discriminator themselves.
+      results[i] = accountNames.contains(name)
+          ? name + ".read(data, offset)"
+          : name + ".read(data, offset + " + discriminator.data().length + ")";
+    }
+    out.newLine();
+
+    out.line("// Decodes the event following its discriminator, or returns null if it is not an event of this program.");
+    out.append("public static ").append(eventInterface)
+        .line(" decodeEvent(final byte[] data, final int offset, final int length) {");
+    out.indent();
+    appendDiscriminatorDispatch(genSrcContext, out, discriminators, constants, results);
+    out.line("return null;");
+    out.outdent();
+    out.line("}").newLine();
+
+    genSrcContext.addImport(Instruction.class);
+    genSrcContext.addStaticImport(AnchorUtil.class, "EVENT_IX_TAG_LE");
+    genSrcContext.addStaticImport(ByteUtil.class, "getInt64LE");
+    out.line("// Returns null if the instruction was not invoked on the program.");
+    out.append("public static ").append(eventInterface)
+        .line(" decodeCpiEvent(final PublicKey program, final Instruction instruction) {");
+    out.indent();
+    out.line("return instruction.programId().publicKey().equals(program)");
+    out.indent().indent();
+    out.line("? decodeCpiEvent(instruction.data(), instruction.offset(), instruction.len())");
+    out.line(": null;");
+    out.outdent().outdent();
+    out.outdent();
+    out.line("}").newLine();
+
+    out.line("// Decodes the event emitted with emit_cpi! from the self CPI instruction data, reading the event in place, or");
+    out.line("// returns null if it is not an event of this program.");
+    out.append("public static ").append(eventInterface)
+        .line(" decodeCpiEvent(final byte[] data, final int offset, final int length) {");
+    out.indent();
+    out.append("return length >= ").append(AnchorUtil.DISCRIMINATOR_LENGTH << 1)
+        .line(" && getInt64LE(data, offset) == EVENT_IX_TAG_LE");
+    out.indent().indent();
+    out.append("? decodeEvent(data, offset + ").append(AnchorUtil.DISCRIMINATOR_LENGTH)
+        .append(", length - ").append(AnchorUtil.DISCRIMINATOR_LENGTH).line(")");
+    out.line(": null;");
+    out.outdent().outdent();
+    out.outdent();
+    out.line("}").newLine();
+
+    out.append("public static void decodeEvents(final PublicKey program,").newLine();
+    out.append("                                final List<String> logMessages,").newLine();
+    out.append("                                final Consumer<? super ").append(eventInterface).line("> consumer) {");
+    out.indent().line("decodeEvents(program.toBase58(), logMessages, null, consumer);").outdent();
+    out.line("}").newLine();
+
+    out.line("// Decodes the events logged by the program in a single pass over the log messages, base64 decoding each");
+    out.line("// \"Program data: \" line into the same buffer. Returns the buffer so that it can be reused for the next");
+    out.line("// transaction.");
+    out.append("public static byte[] decodeEvents(final String program,").newLine();
+    out.append("                                  final List<String> logMessages,").newLine();
+    out.append("                                  final byte[] buffer,").newLine();
+    out.append("                                  final Consumer<? super ").append(eventInterface).line("> consumer) {");
+    out.indent();
+    out.line("return forEachProgramData(program, logMessages, buffer, (data, length) -> {");
+    out.indent();
+    out.line("final var event = decodeEvent(data, 0, length);");
+    out.line("if (event != null) {");
+    out.indent().line("consumer.accept(event);").outdent();
+    out.line("}");
+    out.outdent();
+    out.line("});");
+    out.outdent();
+    out.line("}").newLine();
+
+    out.append("private ").append(className).line("() {");
+    out.line("}");
+    out.outdent().append('}');
+
+    final var header = new StringBuilder(2_048);
+    genSrcContext.appendPackage(header);
+    genSrcContext.appendImports(header);
+    return header.append('\n').append(out).toString();
+  }
+
+  private static final String[] DISCRIMINATOR_SWITCH_KEYS = {
+      "(int) discriminator",
+      "(int) (discriminator >>> 32)",
+      "(int) (discriminator ^ (discriminator >>> 32))"
+  };
+
+  private static int discriminatorSwitchKey(final int keyFunction, final long discriminator) {
+    return switch (keyFunction) {
+      case 0 -> (int) discriminator;
+      case 1 -> (int) (discriminator >>> 32);
+      default -> (int) (discriminator ^ (discriminator >>> 32));
+    };
+  }
+
+  // Returns the first switch key function which is unique for every discriminator, or -1.
+  static int discriminatorSwitchKey(final long[] discriminators) {
+    final var keys = HashSet.<Integer>newHashSet(discriminators.length);
+    for (int keyFunction = 0; keyFunction < DISCRIMINATOR_SWITCH_KEYS.length; ++keyFunction) {
+      keys.clear();
+      boolean unique = true;
+      for (final long discriminator : discriminators) {
+        if (!keys.add(discriminatorSwitchKey(keyFunction, discriminator))) {
+          unique = false;
+          break;
+        }
+      }
+      if (unique) {
+        return keyFunction;
+      }
+    }
+    return -1;
+  }
+
+  // Returns the result whose discriminator equals the long discriminator variable, switching on an int key
+  // derived from the discriminator.
+  private static void appendDiscriminatorSwitch(final SourceWriter out,
+                                                final long[] discriminators,
+                                                final String[] references,
+                                                final String[] results) {
+    final int keyFunction = discriminatorSwitchKey(discriminators);
+    if (keyFunction < 0) {
+      for (int i = 0; i < discriminators.length; ++i) {
+        out.append("if (discriminator == ").append(references[i]).line(") {");
+        out.indent().append("return ").append(results[i]).line(";").outdent();
+        out.line("}");
+      }
+    } else {
+      out.append("switch (").append(DISCRIMINATOR_SWITCH_KEYS[keyFunction]).line(") {");
+      out.indent();
+      for (int i = 0; i < discriminators.length; ++i) {
+        out.append("case ").append(discriminatorSwitchKey(keyFunction, discriminators[i])).line(" -> {");
+        out.indent();
+        out.append("if (discriminator == ").append(references[i]).line(") {");
+        out.indent().append("return ").append(results[i]).line(";").outdent();
+        out.line("}");
+        out.outdent();
+        out.line("}");
+      }
+      out.line("default -> {");
+      out.line("}");
+      out.outdent();
+      out.line("}");
+    }
+  }
+
+  // Returns the result matching the discriminator at the offset of data. Switches on the discriminator as a long if
+  // every discriminator is eight bytes, otherwise compares each discriminator over its own length.
+  private static void appendDiscriminatorDispatch(final GenSrcContext genSrcContext,
+                                                  final SourceWriter out,
+                                                  final Discriminator[] discriminators,
+                                                  final String[] constants,
+                                                  final String[] results) {
+    final boolean longDiscriminators = Arrays.stream(discriminators)
+        .allMatch(discriminator -> discriminator.data().length == AnchorUtil.DISCRIMINATOR_LENGTH);
+    if (longDiscriminators) {
+      genSrcContext.addStaticImport(ByteUtil.class, "getInt64LE");
+      out.append("if (length < ").append(AnchorUtil.DISCRIMINATOR_LENGTH).line(") {");
+      out.indent().line("return null;").outdent();
+      out.line("}");
+      out.line("final long discriminator = getInt64LE(data, offset);");
+      final long[] longs = Arrays.stream(discriminators)
+          .mapToLong(discriminator -> ByteUtil.getInt64LE(discriminator.data(), 0))
+          .toArray();
+      final var references = Arrays.stream(discriminators)
+          .map(AnchorStruct::discriminatorLong)
+          .toArray(String[]::new);
+      appendDiscriminatorSwitch(out, longs, references, results);
+    } else {
+      genSrcContext.addStaticImport(AnchorUtil.class, "discriminatorEquals");
+      for (int i = 0; i < discriminators.length; ++i) {
+        out.append("if (discriminatorEquals(data, offset, length, ").append(constants[i]).line(")) {");
+        out.indent().append("return ").append(results[i]).line(";").outdent();
+        out.line("}");
+      }
+    }
+  }
+
+  private static String generateInstructionDecoder(final GenSrcContext genSrcContext,
+                                                   final List<AnchorInstruction> instructions) {
+    final var instructionInterface = genSrcContext.instructionInterface();
+    genSrcContext.addImport(Discriminator.class);
+    genSrcContext.addImport(Instruction.class);
+    genSrcContext.addImport(PublicKey.class);
+
+    final var out = new SourceWriter(genSrcContext.tab(), 4_096).indent();
+    out.append("public sealed interface ").append(instructionInterface).line(" {").newLine();
+    out.indent().line("Discriminator discriminator();").outdent();
+    out.line("}").newLine();
+
+    out.line("// Returns null if the instruction was not invoked on the program.");
+    out.append("public static ").append(instructionInterface)
+        .line(" decodeInstruction(final PublicKey program, final Instruction instruction) {");
+    out.indent();
+    out.line("return instruction.programId().publicKey().equals(program)");
+    out.indent().indent();
+    out.line("? decodeInstruction(instruction.data(), instruction.offset(), instruction.len())");
+    out.line(": null;");
+    out.outdent().outdent();
+    out.outdent();
+    out.line("}").newLine();
+
+    out.line("// Returns the instruction data matching the discriminator, or null if it is not an instruction of this program.");
+    out.append("public static ").append(instructionInterface)
+        .line(" decodeInstruction(final byte[] data, final int offset, final int length) {");
+    out.indent();
+    final int numInstructions = instructions.size();
+    final var discriminators = new Discriminator[numInstructions];
+    final var constants = new String[numInstructions];
+    final var results = new String[numInstructions];
+    for (int i = 0; i < numInstructions; ++i) {
+      final var ix = instructions.get(i);
+      discriminators[i] = ix.ixDiscriminator();
+      constants[i] = AnchorInstruction.formatDiscriminatorReference(ix.name());
+      final var typeName = ix.ixDataTypeName(genSrcContext);
+      results[i] = ix.args().isEmpty() ? typeName + ".INSTANCE" : typeName + ".read(data, offset)";
+    }
+    appendDiscriminatorDispatch(genSrcContext, out, discriminators, constants, results);
+    out.line("return null;");
+    out.outdent();
+    out.line("}");
+    return out.toString();
+  }
+
+  public String generateAccountsSource(final GenSrcContext genSrcContext) {
+    final var accountTypes = accountTypes();
+    if (accountTypes.isEmpty()) {
+      return null;
+    }
+    final var accountInterface = genSrcContext.accountInterface();
+    genSrcContext.addDefinedImport(accountInterface);
+    genSrcContext.addImport(PublicKey.class);
+
+    final var discriminated = new ArrayList<AnchorNamedType>(accountTypes.size());
+    final var sizes = new TreeMap<Integer, List<AnchorNamedType>>();
+    for (final var account : accountTypes) {
+      genSrcContext.addDefinedImport(account.name());
+      if (hasLongDiscriminator(account)) {
+        discriminated.add(account);
+      } else {
+        final var layout = genSrcContext.layout(account.name());
+        if (layout.fixedLength()) {
+          sizes.computeIfAbsent(layout.serializedLength(), _ -> new ArrayList<>()).add(account);
+        }
+      }
+    }
+
+    final var className = genSrcContext.programName() + "Accounts";
+    final var out = new SourceWriter(genSrcContext.tab(), 4_096);
+    out.append("public final class ").append(className).line(" {").newLine();
+    out.indent();
+    out.line("// Decodes the account by its discriminator, or by its size if its discriminator is not eight bytes.");
+    out.append("public static ").append(accountInterface).line(" decode(final PublicKey address, final byte[] data) {");
+    out.indent();
+    out.line("if (data == null) {");
+    out.indent().line("return null;").outdent();
+    out.line("}");
+    if (!discriminated.isEmpty()) {
+      genSrcContext.addStaticImport(ByteUtil.class, "getInt64LE");
+      out.append("if (data.length >= ").append(AnchorUtil.DISCRIMINATOR_LENGTH).line(") {");
+      out.indent();
+      out.line("final long discriminator = getInt64LE(data, 0);");
+      final long[] discriminators = discriminated.stream()
+          .mapToLong(account -> ByteUtil.getInt64LE(accountDiscriminator(account).data(), 0))
+          .toArray();
+      final var references = discriminated.stream()
+          .map(account -> account.name() + ".DISCRIMINATOR_LONG")
+          .toArray(String[]::new);
+      final var results = discriminated.stream()
+          .map(account -> account.name() + ".read(address, data)")
+          .toArray(String[]::new);
+      appendDiscriminatorSwitch(out, discriminators, references, results);
+      out.outdent();
+      out.line("}");
+    }
+    final var uniqueSizes = sizes.values().stream().filter(accountsOfSize -> accountsOfSize.size() == 1).toList();
+    if (uniqueSizes.isEmpty()) {
+      out.line("return null;");
+    } else {
+      out.line("return switch (data.length) {");
+      out.indent();
+      for (final var accountsOfSize : uniqueSizes) {
+        final var accountName = accountsOfSize.getFirst().name();
+        out.append("case ").append(accountName).append(".BYTES -> ").append(accountName).line(".read(address, data);");
+      }
+      out.line("default -> null;");
+      out.outdent();
+      out.line("};");
+    }
+    out.outdent();
+    out.line("}").newLine();
+    out.append("private ").append(className).line("() {");
+    out.line("}");
+    out.outdent().append('}');
+
+    final var header = new StringBuilder(2_048);
+    genSrcContext.appendPackage(header);
+    genSrcContext.appendImports(header);
+    return header.append('\n').append(out).toString();
   }
 
   public String generateSource(final GenSrcContext genSrcContext) {
     final var pdaAccounts = HashMap.newHashMap(instructions.size() << 1);
     final var ixBuilder = new StringBuilder();
     for (final var ix : instructions) {
-      ixBuilder.append('\n').append(ix.generateFactorySource(genSrcContext, "  "));
+      ixBuilder.append('\n').append(ix.generateFactorySource(genSrcContext));
       for (final var account : ix.accounts()) {
         final var pda = account.pda();
         if (pda != null) {
@@ -178,6 +639,8 @@ public record AnchorIDL(PublicKey address,
       }
     }
 
+    final var instructionDecoder = instructions.isEmpty() ? null : generateInstructionDecoder(genSrcContext, instructions);
+
     final var builder = new StringBuilder(4_096);
     genSrcContext.appendPackage(builder);
 
@@ -189,6 +652,9 @@ public record AnchorIDL(PublicKey address,
         public final class %s {
         """, className));
     builder.append(ixBuilder).append('\n');
+    if (instructionDecoder != null) {
+      builder.append(instructionDecoder).append('\n');
+    }
     return closeClass(genSrcContext, className, builder);
   }
 
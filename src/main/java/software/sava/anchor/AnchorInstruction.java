@@ -11,41 +11,19 @@ import java.util.Objects;
 import java.util.stream.Collectors;
 
 import static java.util.Locale.ENGLISH;
-import static software.sava.anchor.AnchorSourceGenerator.removeBlankLines;
+import static software.sava.anchor.SourceWriter.joinLines;
 
 public record AnchorInstruction(Discriminator discriminator,
                                 String name,
                                 List<AnchorAccountMeta> accounts,
                                 List<AnchorNamedType> args) {
 
-  static String replaceNewLinesIfLessThan(final String lines, final int numLines, final int limit) {
-    return numLines < limit && !lines.contains("//") ? lines.replaceAll("\n +", " ") : lines;
-  }
-
-  static String replaceNewLinesIfLessThan(final StringBuilder lines, final int numLines, final int limit) {
-    return replaceNewLinesIfLessThan(lines.toString(), numLines, limit);
-  }
-
-  static String replaceNewLinesIfLessThan(final String lines, final int limit) {
-    int numNewLines = 0;
-    for (int from = 0, to = lines.length(); from < to; ++from) {
-      if (lines.indexOf('\n', from) > 0) {
-        ++numNewLines;
-      }
-    }
-    return replaceNewLinesIfLessThan(lines, numNewLines, limit);
-  }
-
-  static String replaceNewLinesIfLessThan(final StringBuilder lines, final int limit) {
-    return replaceNewLinesIfLessThan(lines.toString(), limit);
-  }
-
   private static String formatKeyName(final AnchorAccountMeta accountMeta) {
     final var name = accountMeta.name();
     return name.endsWith("Key") || name.endsWith("key") ? name : name + "Key";
   }
 
-  private static String formatDiscriminatorReference(final String ixName) {
+  static String formatDiscriminatorReference(final String ixName) {
     return String.format("%s_DISCRIMINATOR", AnchorUtil.snakeCase(ixName).toUpperCase(ENGLISH));
   }
 
@@ -53,17 +31,34 @@ public record AnchorInstruction(Discriminator discriminator,
     return Arrays.stream(discriminator.toIntArray())
         .mapToObj(Integer::toString)
         .collect(Collectors.joining(", ",
-            String.format("  public static final Discriminator %s = toDiscriminator(", formatDiscriminatorReference(ixName)), ");"));
+            String.format("public static final Discriminator %s = toDiscriminator(", formatDiscriminatorReference(ixName)), ");"));
   }
 
-  public String generateFactorySource(final GenSrcContext genSrcContext, final String parentTab) {
+  Discriminator ixDiscriminator() {
+    return discriminator == null ? AnchorUtil.toDiscriminator(name) : discriminator;
+  }
+
+  String ixDataTypeName(final GenSrcContext genSrcContext) {
+    final var definedTypes = genSrcContext.definedTypes();
+    final var ixCamelName = AnchorUtil.camelCase(name, true);
+    var typeName = ixCamelName + "IxData";
+    if (definedTypes.containsKey(typeName)) {
+      typeName = ixCamelName + "IxRecord";
+      for (int i = 2; definedTypes.containsKey(typeName); ++i) {
+        typeName = ixCamelName + "IxData" + i;
+      }
+    }
+    return typeName;
+  }
+
+  public String generateFactorySource(final GenSrcContext genSrcContext) {
     final var tab = genSrcContext.tab();
-    final var builder = new StringBuilder(2_048);
+    final var out = new SourceWriter(tab, 2_048).indent();
 
     genSrcContext.addImport(Discriminator.class);
     genSrcContext.addStaticImport(Discriminator.class, "toDiscriminator");
-    builder.append(formatDiscriminator(name, discriminator == null ? AnchorUtil.toDiscriminator(name) : discriminator));
-    builder.append("\n\n");
+    out.line(formatDiscriminator(name, ixDiscriminator()));
+    out.newLine();
 
     final var keyParamsBuilder = new StringBuilder(1_024);
     final var programMetaReference = String.format("invoked%sProgramMeta", genSrcContext.programName());
@@ -73,9 +68,7 @@ public record AnchorInstruction(Discriminator discriminator,
     final var stringsBuilder = new StringBuilder(1_024);
     final var createKeysBuilder = new StringBuilder(1_024);
 
-    final var dataTab = parentTab + " ".repeat(genSrcContext.tabLength());
-    final var keyTab = dataTab + tab;
-    createKeysBuilder.append(dataTab).append("final var keys = ");
+    createKeysBuilder.append("final var keys = ");
     if (accounts.isEmpty()) {
       createKeysBuilder.append("AccountMeta.NO_KEYS;\n\n");
     } else {
@@ -130,12 +123,12 @@ public record AnchorInstruction(Discriminator discriminator,
           append = String.format("createRead(%s)", varName);
           genSrcContext.addStaticImport(AccountMeta.class, "createRead");
         }
-        createKeysBuilder.append("\n").append(keyTab).append(append);
+        createKeysBuilder.append("\n").append(tab).append(append);
 
         if (accountsIterator.hasNext()) {
           createKeysBuilder.append(',');
         } else {
-          createKeysBuilder.append('\n').append(dataTab).append(");\n\n");
+          createKeysBuilder.append("\n);\n\n");
           break;
         }
       }
@@ -165,62 +158,58 @@ public record AnchorInstruction(Discriminator discriminator,
       dataSerialization = dataBuilder.toString();
     }
 
-    final var methodSignature = String.format("%spublic static Instruction %s(", tab, name);
-    builder.append(methodSignature);
+    final var methodSignature = String.format("public static Instruction %s(", name);
+    out.append(methodSignature);
 
     // Parameters
     paramsBuilder.setLength(paramsBuilder.length() - 2);
-    paramsBuilder.append(") {\n");
-    final var paramTab = " ".repeat(methodSignature.length());
-    final var params = paramsBuilder.toString().indent(paramTab.length()).stripLeading();
-    builder.append(replaceNewLinesIfLessThan(params, numArgs + accounts.size(), 3));
+    out.appendLines(paramsBuilder, methodSignature.length(), joinLines(paramsBuilder, numArgs + accounts.size(), 3));
+    out.line(") {");
+    out.indent();
 
     // Keys
-    builder.append(createKeysBuilder);
+    out.append(createKeysBuilder);
 
     // String -> byte[]
-    builder.append(stringsBuilder.toString().indent(dataTab.length()));
+    out.append(stringsBuilder).endLine();
 
     final var discriminatorReference = formatDiscriminatorReference(name);
     // Data, create and Instruction.
     if (numArgs > 0) {
       genSrcContext.addStaticImport(AnchorUtil.class, "writeDiscriminator");
       dataLength += AnchorUtil.DISCRIMINATOR_LENGTH;
-      builder.append(String.format("""
-              final byte[] _data = new byte[%s];
-              int i = writeDiscriminator(%s, _data, 0);
-              """,
-          dataLengthAdds.contains("\n")
-              ? String.format("\n%s%s%d%s\n", tab, tab, dataLength, dataLengthAdds)
-              : String.format("%d%s", dataLength, dataLengthAdds),
-          discriminatorReference
-      ).indent(dataTab.length()));
-      builder.append(dataSerialization.indent(dataTab.length()));
-      builder.append(String.format("""
-              
-                return Instruction.createInstruction(%s, keys, _data);
-              }
-              """,
-          programMetaReference).indent(parentTab.length()));
+      out.append("final byte[] _data = new byte[");
+      if (dataLengthAdds.indexOf('\n') >= 0) {
+        out.newLine().append(tab).append(tab).append(dataLength).append(dataLengthAdds).newLine();
+      } else {
+        out.append(dataLength).append(dataLengthAdds);
+      }
+      out.line("];");
+      out.append("int i = writeDiscriminator(").append(discriminatorReference).line(", _data, 0);");
+      out.append(dataSerialization).endLine();
+      out.newLine();
+      out.append("return Instruction.createInstruction(").append(programMetaReference).line(", keys, _data);");
     } else {
-      builder.append(String.format("""          
-                return Instruction.createInstruction(%s, keys, %s);
-              }
-              """,
-          programMetaReference, discriminatorReference).indent(parentTab.length()));
+      out.append("return Instruction.createInstruction(").append(programMetaReference)
+          .append(", keys, ").append(discriminatorReference).line(");");
     }
+    out.outdent();
+    out.line("}");
     genSrcContext.addImport(Instruction.class);
 
-    if (!args.isEmpty()) {
-      final var definedTypes = genSrcContext.definedTypes();
-      final var ixCamelName = AnchorUtil.camelCase(name, true);
-      var typeName = ixCamelName + "IxData";
-      if (definedTypes.containsKey(typeName)) {
-        typeName = ixCamelName + "IxRecord";
-        for (int i = 2; definedTypes.containsKey(typeName); ++i) {
-          typeName = ixCamelName + "IxData" + i;
-        }
-      }
+    final var typeName = ixDataTypeName(genSrcContext);
+    final var instructionInterface = genSrcContext.instructionInterface();
+    if (args.isEmpty()) {
+      // Instructions without arguments are represented by a single instance.
+      out.newLine();
+      out.append("public record ").append(typeName).append("(Discriminator discriminator) implements ")
+          .append(instructionInterface).line(" {").newLine();
+      out.indent();
+      out.append("public static final ").append(typeName).append(" INSTANCE = new ").append(typeName)
+          .append('(').append(discriminatorReference).line(");");
+      out.outdent();
+      out.line("}");
+    } else {
       final var struct = new AnchorStruct(args);
       final var namedType = new AnchorNamedType(
           discriminator,
@@ -231,22 +220,19 @@ public record AnchorInstruction(Discriminator discriminator,
           List.of(),
           false
       );
-      final var sourceCode = struct.generateSource(genSrcContext, namedType);
-      final var injectKey = "implements Borsh {";
-      int offset = sourceCode.indexOf(injectKey) + injectKey.length();
-      final var header = sourceCode.substring(0, offset);
-      final var readHelper = String.format("""
-              
-              
-              public static %s read(final Instruction instruction) {
-              %sreturn read(instruction.data(), instruction.offset());
-              }""",
-          typeName, tab
-      ).indent(genSrcContext.tabLength());
-      final var withHelper = header + readHelper + sourceCode.substring(offset + 1);
-      builder.append(withHelper.indent(genSrcContext.tabLength()));
+      final var interfaceName = "Borsh, " + instructionInterface;
+      final var sourceCode = struct.generateSource(genSrcContext, namedType, interfaceName);
+      final var injectKey = "implements " + interfaceName + " {";
+      final int offset = sourceCode.indexOf(injectKey) + injectKey.length();
+      out.append(sourceCode.substring(0, offset)).newLine().newLine();
+      out.indent();
+      out.append("public static ").append(typeName).line(" read(final Instruction instruction) {");
+      out.indent().line("return read(instruction.data(), instruction.offset());").outdent();
+      out.line("}");
+      out.outdent();
+      out.append(sourceCode.substring(offset + 1));
     }
 
-    return removeBlankLines(builder.toString());
+    return out.toString();
   }
 }
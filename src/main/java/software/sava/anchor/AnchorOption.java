@@ -80,7 +80,9 @@ public record AnchorOption(AnchorTypeContext genericType) implements AnchorRefer
 
   @Override
   public String generateNewInstanceField(final GenSrcContext genSrcContext, final String varName) {
-    return AnchorArray.generateNewInstanceField(genericType, varName);
+    return type() == string && genSrcContext.isLazyString(varName)
+        ? varName
+        : AnchorArray.generateNewInstanceField(genericType, varName);
   }
 
   @Override
@@ -126,6 +128,10 @@ public record AnchorOption(AnchorTypeContext genericType) implements AnchorRefer
   public String generateWrite(final GenSrcContext genSrcContext,
                               final String varName,
                               final boolean hasNext) {
+    if (type() == string && genSrcContext.isLazyString(varName)) {
+      genSrcContext.addImport(LazyString.class);
+      return String.format("%sLazyString.writeOptional(_%s, _data, i);", hasNext ? "i += " : "", varName);
+    }
     genSrcContext.addImport(Borsh.class);
     return switch (genericType.type()) {
       case bytes ->
@@ -153,17 +159,82 @@ public record AnchorOption(AnchorTypeContext genericType) implements AnchorRefer
     };
   }
 
+  // Optional primitives can be stored in records as the raw value plus a bit in the record's _present bitset,
+  // see GenSrcOptions.packedOptionals.
+  boolean isPackable() {
+    return genericType instanceof AnchorPrimitive && switch (type()) {
+      case bool, i8, u8, i16, u16, i32, u32, i64, u64, usize, f32, f64 -> true;
+      default -> false;
+    };
+  }
+
+  static String packedPresentCheck(final int bit) {
+    return String.format("(_present & (1L << %d)) != 0", bit);
+  }
+
+  String generatePackedRead(final GenSrcContext genSrcContext,
+                            final String varName,
+                            final int bit,
+                            final boolean hasNext,
+                            final boolean singleField,
+                            final String offsetVarName) {
+    final var primitive = (AnchorPrimitive) genericType;
+    final var read = primitive.generateRead(genSrcContext, singleField ? offsetVarName + " + 1" : offsetVarName);
+    final var tab = genSrcContext.tab();
+    final var builder = new StringBuilder(256);
+    builder.append(String.format("""
+            final %s %s;
+            if (_data[%s] == 0) {
+            %s%s = %s;
+            } else {
+            %s%s = %s;
+            %s_present |= 1L << %d;
+            """,
+        primitive.typeName(), varName,
+        singleField ? offsetVarName : offsetVarName + "++",
+        tab, varName, type() == bool ? "false" : "0",
+        tab, varName, read,
+        tab, bit
+    ));
+    if (hasNext) {
+      final int dataLength = type().dataLength();
+      builder.append(tab).append(dataLength == 1 ? "++i;" : String.format("i += %d;", dataLength)).append('\n');
+    }
+    return builder.append('}').toString();
+  }
+
+  String generatePackedWrite(final GenSrcContext genSrcContext, final String varName, final int bit) {
+    final var tab = genSrcContext.tab();
+    return String.format("""
+            if (%s) {
+            %s_data[i++] = 1;
+            %s} else {
+            %s_data[i++] = 0;
+            }""",
+        packedPresentCheck(bit),
+        tab,
+        genericType.generateWrite(genSrcContext, varName, true).indent(genSrcContext.tabLength()),
+        tab
+    );
+  }
+
+  String generatePackedLength(final int bit) {
+    return String.format("(%s ? %d : 1)", packedPresentCheck(bit), 1 + type().dataLength());
+  }
+
   @Override
   public int fixedSerializedLength(final GenSrcContext genSrcContext) {
     final boolean hasDiscriminator = genSrcContext.isAccount(genericType.typeName());
-    return 1 + (genericType.isFixedLength(genSrcContext.definedTypes())
+    return 1 + (genericType.isFixedLength(genSrcContext)
         ? genericType.serializedLength(genSrcContext, hasDiscriminator)
         : genericType.fixedSerializedLength(genSrcContext, hasDiscriminator));
   }
 
   @Override
   public String generateLength(final String varName, final GenSrcContext genSrcContext) {
-    final var notPresentCheckCode = notPresentCheckCode(type(), varName);
+    final var notPresentCheckCode = type() == string && genSrcContext.isLazyString(varName)
+        ? String.format("_%s == null", varName)
+        : notPresentCheckCode(type(), varName);
     return String.format("(%s ? 1 : (1 + %s))", notPresentCheckCode, genericType.generateLength(varName, genSrcContext));
   }
 
@@ -195,6 +266,10 @@ public record AnchorOption(AnchorTypeContext genericType) implements AnchorRefer
               """,
           varName, varName, varName, varName, varName, varName, varName, varName, varName, varName));
       dataLengthBuilder.append(String.format(" + _%sLen", varName));
+      // Instruction arguments are always encoded from the UTF-8 bytes, even if record fields are LazyStrings.
+      genSrcContext.addImport(Borsh.class);
+      dataBuilder.append(String.format("%sBorsh.writeOptionalVector(_%s, _data, i);", hasNext ? "i += " : "", varName));
+      return 0;
     } else {
       final var optionalType = type.optionalJavaType();
       if (optionalType != null) {
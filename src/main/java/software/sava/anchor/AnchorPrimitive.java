@@ -7,7 +7,9 @@ import software.sava.core.encoding.ByteUtil;
 import software.sava.core.rpc.Filter;
 
 import java.math.BigInteger;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import static software.sava.anchor.AnchorType.*;
 
@@ -25,7 +27,7 @@ public record AnchorPrimitive(AnchorType type) implements AnchorReferenceTypeCon
   }
 
   @Override
-  public boolean isFixedLength(final Map<String, AnchorNamedType> definedTypes) {
+  public boolean isFixedLength(final GenSrcContext genSrcContext) {
     return type.dataLength() > 0;
   }
 
@@ -103,6 +105,112 @@ public record AnchorPrimitive(AnchorType type) implements AnchorReferenceTypeCon
         AnchorUtil.camelCase(varName, true), typeName(), varName, serializeCode.indent(genSrcContext.tabLength())
     ));
     genSrcContext.addImport(Filter.class);
+
+    final var valueOffset = optional ? offsetVarName + " + 1" : offsetVarName;
+    final var conditions = new ArrayList<String>(4);
+    String prelude = null;
+    switch (type) {
+      case bytes, string -> {
+        genSrcContext.addImport(Arrays.class);
+        genSrcContext.addStaticImport(ByteUtil.class, "getInt32LE");
+        final String bytes;
+        if (type == string) {
+          genSrcContext.addUTF_8Import();
+          bytes = "_bytes";
+          prelude = String.format("final byte[] %s = %s.getBytes(UTF_8);", bytes, varName);
+        } else {
+          bytes = varName;
+        }
+        conditions.add(String.format("_data.length >= %s + %d + %s.length", offsetVarName, optional ? 5 : 4, bytes));
+        if (optional) {
+          conditions.add(String.format("_data[%s] == 1", offsetVarName));
+        }
+        conditions.add(String.format("getInt32LE(_data, %s) == %s.length", valueOffset, bytes));
+        conditions.add(String.format(
+            "Arrays.equals(_data, %s + 4, %s + 4 + %s.length, %s, 0, %s.length)",
+            valueOffset, valueOffset, bytes, bytes, bytes
+        ));
+      }
+      default -> {
+        conditions.add(String.format("_data.length >= %s + %d", offsetVarName, (optional ? 1 : 0) + type.dataLength()));
+        if (optional) {
+          conditions.add(String.format("_data[%s] == 1", offsetVarName));
+        }
+        conditions.add(generateEquals(genSrcContext, valueOffset, varName));
+      }
+    }
+    appendMatches(genSrcContext, builder, typeName(), varName, prelude, conditions);
+  }
+
+  // Whether the value can be compared in place with a few primitive compares.
+  boolean hasInPlaceEquals() {
+    return type == publicKey || (type.dataLength() > 0 && type.dataLength() <= Long.BYTES);
+  }
+
+  // Compares the serialized value at the offset of _data with the variable without decoding it.
+  String generateEquals(final GenSrcContext genSrcContext, final String offset, final String varName) {
+    return switch (type) {
+      case bool -> String.format("_data[%s] == (%s ? 1 : 0)", offset, varName);
+      case i8, u8 -> String.format("_data[%s] == (byte) %s", offset, varName);
+      case i16, u16 -> {
+        genSrcContext.addStaticImport(ByteUtil.class, "getInt16LE");
+        yield String.format("getInt16LE(_data, %s) == (short) %s", offset, varName);
+      }
+      case i32, u32 -> {
+        genSrcContext.addStaticImport(ByteUtil.class, "getInt32LE");
+        yield String.format("getInt32LE(_data, %s) == (int) %s", offset, varName);
+      }
+      case i64, u64, usize -> {
+        genSrcContext.addStaticImport(ByteUtil.class, "getInt64LE");
+        yield String.format("getInt64LE(_data, %s) == %s", offset, varName);
+      }
+      // Compare the raw bits, as a memory compare would.
+      case f32 -> {
+        genSrcContext.addStaticImport(ByteUtil.class, "getInt32LE");
+        yield String.format("getInt32LE(_data, %s) == Float.floatToRawIntBits(%s)", offset, varName);
+      }
+      case f64 -> {
+        genSrcContext.addStaticImport(ByteUtil.class, "getInt64LE");
+        yield String.format("getInt64LE(_data, %s) == Double.doubleToRawLongBits(%s)", offset, varName);
+      }
+      case i128, u128, i256, u256 -> {
+        genSrcContext.addStaticImport(AnchorUtil.class, "wideIntegerEquals");
+        yield String.format(
+            "wideIntegerEquals(_data, %s, %d, %b, %s)",
+            offset, type.dataLength(), type == i128 || type == i256, varName
+        );
+      }
+      case publicKey -> {
+        genSrcContext.addStaticImport(AnchorUtil.class, "publicKeyEquals");
+        yield String.format("publicKeyEquals(_data, %s, %s)", offset, varName);
+      }
+      default -> throw new IllegalStateException("Unexpected type: " + type);
+    };
+  }
+
+  // Appends a predicate which compares the field bytes in place, equivalent to evaluating the memory compare filter
+  // against the account data.
+  static void appendMatches(final GenSrcContext genSrcContext,
+                            final StringBuilder builder,
+                            final String typeName,
+                            final String varName,
+                            final String prelude,
+                            final List<String> conditions) {
+    final var tab = genSrcContext.tab();
+    builder.append(String.format("""
+            
+            public static boolean matches%s(final byte[] _data, final %s %s) {
+            """,
+        AnchorUtil.camelCase(varName, true), typeName, varName
+    ));
+    if (prelude != null) {
+      builder.append(tab).append(prelude).append('\n');
+    }
+    builder.append(tab).append("return ").append(conditions.getFirst());
+    for (int i = 1; i < conditions.size(); ++i) {
+      builder.append('\n').append(tab.repeat(3)).append("&& ").append(conditions.get(i));
+    }
+    builder.append(";\n}\n");
   }
 
   @Override
@@ -124,7 +232,10 @@ public record AnchorPrimitive(AnchorType type) implements AnchorReferenceTypeCon
   public String generateRecordField(final GenSrcContext genSrcContext, final AnchorNamedType context, final boolean optional) {
     final var varName = context.name();
     final var typeName = optional ? optionalTypeName() : typeName();
-    if (type == string) {
+    if (type == string && genSrcContext.isLazyString(varName)) {
+      genSrcContext.addImport(LazyString.class);
+      return String.format("%sLazyString _%s", context.docComments(), varName);
+    } else if (type == string) {
       genSrcContext.addImport(String.class);
       return String.format("%s%s %s, byte[] _%s", context.docComments(), typeName, varName, varName);
     } else {
@@ -148,7 +259,7 @@ public record AnchorPrimitive(AnchorType type) implements AnchorReferenceTypeCon
 
   @Override
   public String generateNewInstanceField(final GenSrcContext genSrcContext, final String varName) {
-    if (type == string) {
+    if (type == string && !genSrcContext.isLazyString(varName)) {
       genSrcContext.addUTF_8Import();
       return String.format("%s, %s.getBytes(UTF_8)", varName, varName);
     } else {
@@ -190,7 +301,16 @@ public record AnchorPrimitive(AnchorType type) implements AnchorReferenceTypeCon
                              final boolean hasNext,
                              final boolean singleField,
                              final String offsetVarName) {
-    if (type == string) {
+    if (type == string && genSrcContext.isLazyString(varName)) {
+      genSrcContext.addImport(LazyString.class);
+      final var readLine = String.format(
+          "final var %s = LazyString.%s(_data, %s);",
+          varName, genSrcContext.isInternedString(varName) ? "intern" : "read", offsetVarName
+      );
+      return hasNext
+          ? readLine + String.format("%ni += %s.l();", varName)
+          : readLine;
+    } else if (type == string) {
       genSrcContext.addImport(Borsh.class);
       if (hasNext) {
         genSrcContext.addStaticImport(ByteUtil.class, "getInt32LE");
@@ -241,7 +361,9 @@ public record AnchorPrimitive(AnchorType type) implements AnchorReferenceTypeCon
 
   @Override
   public String generateWrite(final GenSrcContext genSrcContext, final String varName, final boolean hasNext) {
-    if (type == string) {
+    if (type == string && genSrcContext.isLazyString(varName)) {
+      return String.format("%s_%s.write(_data, i);", hasNext ? "i += " : "", varName);
+    } else if (type == string) {
       genSrcContext.addUTF_8Import();
       genSrcContext.addImport(Borsh.class);
       return String.format("%sBorsh.writeVector(_%s, _data, i);", hasNext ? "i += " : "", varName);
@@ -379,7 +501,9 @@ public record AnchorPrimitive(AnchorType type) implements AnchorReferenceTypeCon
 
   @Override
   public String generateLength(final String varName, final GenSrcContext genSrcContext) {
-    if (type == string) {
+    if (type == string && genSrcContext.isLazyString(varName)) {
+      return String.format("_%s.l()", varName);
+    } else if (type == string) {
       genSrcContext.addImport(Borsh.class);
       return String.format("Borsh.lenVector(_%s)", varName);
     } else if (type == bytes) {
@@ -407,7 +531,8 @@ public record AnchorPrimitive(AnchorType type) implements AnchorReferenceTypeCon
       stringsBuilder.append(String.format("final byte[] _%s = %s.getBytes(UTF_8);\n", varName, varName));
       genSrcContext.addImport(Borsh.class);
       dataLengthBuilder.append(String.format(" + Borsh.lenVector(_%s)", varName));
-      dataBuilder.append(generateWrite(genSrcContext, varName, hasNext));
+      // Instruction arguments are always encoded from the UTF-8 bytes, even if record fields are LazyStrings.
+      dataBuilder.append(String.format("%sBorsh.writeVector(_%s, _data, i);", hasNext ? "i += " : "", varName));
       return 4;
     } else if (type == bytes) {
       genSrcContext.addImport(Borsh.class);
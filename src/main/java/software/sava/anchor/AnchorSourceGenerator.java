@@ -3,106 +3,227 @@ package software.sava.anchor;
 import software.sava.core.accounts.PublicKey;
 import software.sava.rpc.json.http.client.SolanaRpcClient;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
-
-import static java.nio.file.StandardOpenOption.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
 
 public record AnchorSourceGenerator(Path sourceDirectory,
                                     String packageName,
-                                    int tabLength,
-                                    AnchorIDL idl) implements Runnable {
+                                    AnchorIDL idl,
+                                    GenSrcOptions options,
+                                    boolean syncOutput) implements Runnable {
 
   private static final System.Logger logger = System.getLogger(AnchorSourceGenerator.class.getName());
 
+  public static final int MAX_MULTIPLE_ACCOUNTS = 100;
+
+  private static final BiFunction<PublicKey, byte[], byte[]> ACCOUNT_DATA = (_, data) -> data;
+
+  public AnchorSourceGenerator(final Path sourceDirectory,
+                               final String packageName,
+                               final int tabLength,
+                               final AnchorIDL idl) {
+    this(sourceDirectory, packageName, idl, GenSrcOptions.DEFAULT.withTabLength(tabLength), true);
+  }
+
+  public int tabLength() {
+    return options.tabLength();
+  }
+
   static String removeBlankLines(final String str) {
-    return Arrays.stream(str.split("\n"))
-        .map(line -> !line.isEmpty() && line.isBlank() ? "" : line)
-        .collect(Collectors.joining("\n", "", "\n"));
+    int end = str.length();
+    while (end > 0 && str.charAt(end - 1) == '\n') {
+      --end;
+    }
+    final var out = new StringBuilder(end + 1);
+    for (int from = 0, to; from < end; from = to + 1) {
+      to = str.indexOf('\n', from);
+      if (to < 0 || to > end) {
+        to = end;
+      }
+      boolean blank = true;
+      for (int i = from; i < to; ++i) {
+        if (!Character.isWhitespace(str.charAt(i))) {
+          blank = false;
+          break;
+        }
+      }
+      if (!blank) {
+        out.append(str, from, to);
+      }
+      out.append('\n');
+    }
+    return out.isEmpty() ? "\n" : out.toString();
   }
 
-  public static CompletableFuture<AnchorIDL> fetchIDL(final PublicKey idlAddress, final SolanaRpcClient rpcClient) {
+  public static CompletableFuture<byte[]> fetchIDLJson(final PublicKey idlAddress, final SolanaRpcClient rpcClient) {
     return rpcClient.getAccountInfo(idlAddress, OnChainIDL.FACTORY)
         .thenApply(idlAccountInfo -> {
           final var idl = idlAccountInfo.data();
-          if (idl == null) {
-            return null;
-          } else {
-            final byte[] json = idl.json();
-//            try {
-//              Files.write(Path.of(idlAddress + "_idl.json"), json, CREATE, TRUNCATE_EXISTING, WRITE);
-//            } catch (final IOException e) {
-//              throw new UncheckedIOException(e);
-//            }
-            return AnchorIDL.parseIDL(json);
+          return idl == null ? null : idl.json();
+        });
+  }
+
+  public static CompletableFuture<byte[]> fetchIDLAccountData(final PublicKey idlAddress, final SolanaRpcClient rpcClient) {
+    return rpcClient.getAccountInfo(idlAddress, ACCOUNT_DATA)
+        .thenApply(idlAccountInfo -> idlAccountInfo == null ? null : idlAccountInfo.data());
+  }
+
+  // Fetches the raw data of up to MAX_MULTIPLE_ACCOUNTS IDL accounts with a single request.
+  // IDL addresses without an account are absent from the returned map.
+  public static CompletableFuture<Map<PublicKey, byte[]>> fetchIDLAccountData(final List<PublicKey> idlAddresses,
+                                                                              final SolanaRpcClient rpcClient) {
+    if (idlAddresses.size() > MAX_MULTIPLE_ACCOUNTS) {
+      throw new IllegalArgumentException(String.format(
+          "A maximum of %d IDL accounts may be fetched at once, not %d.",
+          MAX_MULTIPLE_ACCOUNTS, idlAddresses.size()
+      ));
+    }
+    return rpcClient.getMultipleAccounts(idlAddresses, ACCOUNT_DATA)
+        .thenApply(accountInfos -> {
+          final var accountData = HashMap.<PublicKey, byte[]>newHashMap(idlAddresses.size());
+          for (int i = 0; i < accountInfos.size(); ++i) {
+            final var accountInfo = accountInfos.get(i);
+            if (accountInfo != null) {
+              final var data = accountInfo.data();
+              if (data != null && data.length > 0) {
+                accountData.put(idlAddresses.get(i), data);
+              }
+            }
           }
+          return accountData;
         });
   }
 
-  public static CompletableFuture<AnchorIDL> fetchIDLForProgram(final PublicKey programAddress, final SolanaRpcClient rpcClient) {
-    final var idlAddress = AnchorUtil.createIdlAddress(programAddress);
-    return fetchIDL(idlAddress, rpcClient);
+  // Fetches and decodes up to MAX_MULTIPLE_ACCOUNTS on-chain IDL accounts with a single request.
+  public static CompletableFuture<Map<PublicKey, byte[]>> fetchIDLJson(final List<PublicKey> idlAddresses,
+                                                                       final SolanaRpcClient rpcClient) {
+    return fetchIDLAccountData(idlAddresses, rpcClient).thenApply(accountData -> {
+      final var idlJson = HashMap.<PublicKey, byte[]>newHashMap(accountData.size());
+      for (final var entry : accountData.entrySet()) {
+        final var idl = OnChainIDL.FACTORY.apply(entry.getKey(), entry.getValue());
+        if (idl != null) {
+          idlJson.put(entry.getKey(), idl.json());
+        }
+      }
+      return idlJson;
+    });
   }
 
-  public static CompletableFuture<AnchorIDL> fetchIDL(final HttpClient httpClient, final URI idlURL) {
+  public static CompletableFuture<byte[]> fetchIDLJson(final HttpClient httpClient, final URI idlURL) {
     final var idlRequest = HttpRequest.newBuilder().uri(idlURL).GET().build();
     return httpClient.sendAsync(idlRequest, HttpResponse.BodyHandlers.ofByteArray())
-        .thenApply(response -> AnchorIDL.parseIDL(response.body()));
+        .thenApply(HttpResponse::body);
   }
 
-  private static void createDirectories(final Path path) {
-    try {
-      Files.createDirectories(path);
-    } catch (final IOException e) {
-      throw new UncheckedIOException("Failed to create source directory.", e);
-    }
+  public static CompletableFuture<AnchorIDL> fetchIDL(final PublicKey idlAddress, final SolanaRpcClient rpcClient) {
+    return fetchIDLJson(idlAddress, rpcClient)
+        .thenApply(json -> json == null ? null : AnchorIDL.parseIDL(json));
+  }
+
+  public static CompletableFuture<AnchorIDL> fetchIDLForProgram(final PublicKey programAddress, final SolanaRpcClient rpcClient) {
+    final var idlAddress = AnchorUtil.createIdlAddress(programAddress);
+    return fetchIDL(idlAddress, rpcClient);
+  }
+
+  public static CompletableFuture<AnchorIDL> fetchIDL(final HttpClient httpClient, final URI idlURL) {
+    return fetchIDLJson(httpClient, idlURL).thenApply(AnchorIDL::parseIDL);
   }
 
-  private static void clearAndReCreateDirectory(final Path path) {
-    if (Files.exists(path)) {
-      try (final var stream = Files.walk(path)) {
-        stream.sorted(Comparator.reverseOrder()).forEach(p -> {
-          try {
-            Files.delete(p);
-          } catch (final IOException e) {
-            throw new UncheckedIOException("Failed to delete generated source file.", e);
+  private static void runAll(final List<Runnable> tasks) {
+    try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      final var futures = tasks.stream().<Future<?>>map(executor::submit).toList();
+      for (final var future : futures) {
+        try {
+          future.get();
+        } catch (final ExecutionException e) {
+          futures.forEach(f -> f.cancel(true));
+          if (e.getCause() instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+          } else {
+            throw new RuntimeException(e.getCause());
           }
-        });
-      } catch (final IOException e) {
-        throw new UncheckedIOException("Failed to delete and re-create source directories.", e);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
       }
     }
-    createDirectories(path);
   }
 
   public void run() {
-    var fullSrcDir = sourceDirectory;
+    generate();
+  }
+
+  public List<Path> generate() {
+    final var writer = createWriter();
+    generateSources(packageName, idl, options, writer);
+    return writer.finish();
+  }
+
+  private SourceFileWriter createWriter() {
+    var packageDirectory = sourceDirectory;
     for (final var pkgDirectory : packageName.split("\\.")) {
-      fullSrcDir = fullSrcDir.resolve(pkgDirectory);
+      packageDirectory = packageDirectory.resolve(pkgDirectory);
     }
-    clearAndReCreateDirectory(fullSrcDir);
+    final var writer = new SourceFileWriter(sourceDirectory, packageDirectory, syncOutput);
+    writer.prepare();
+    return writer;
+  }
+
+  // Generates the sources in memory, excluding the idl json which is written from the IDL as is.
+  Map<String, String> generateSources() {
+    return generateSources(packageName, idl, options.withIdlJson(false));
+  }
 
-    try {
-      Files.write(fullSrcDir.resolve("idl.json"), idl.json(), CREATE, TRUNCATE_EXISTING, WRITE);
-    } catch (final IOException e) {
-      throw new UncheckedIOException("Failed to write idl json file.", e);
+  List<Path> writeSources(final Map<String, String> sources) {
+    final var writer = createWriter();
+    if (options.idlJson() && idl.json() != null) {
+      writer.accept(packagePath(packageName) + "idl.json", idl.json());
     }
+    sources.forEach(writer::accept);
+    return writer.finish();
+  }
+
+  private static String packagePath(final String packageName) {
+    return packageName.replace('.', '/') + '/';
+  }
 
-    final var typesDir = fullSrcDir.resolve("types");
+  // Returns every generated file of the program keyed by its path relative to the source directory.
+  public static SortedMap<String, String> generateSources(final String packageName,
+                                                          final AnchorIDL idl,
+                                                          final GenSrcOptions options) {
+    final var sources = new ConcurrentSkipListMap<String, String>();
+    generateSources(packageName, idl, options, sources::put);
+    return Collections.unmodifiableSortedMap(sources);
+  }
+
+  // Passes every generated file of the program to the sink as soon as it is generated.
+  // The idl json is only included if requested and retained by the IDL.
+  public static void generateSources(final String packageName,
+                                     final AnchorIDL programIDL,
+                                     final GenSrcOptions options,
+                                     final SourceSink sink) {
+    final var wideIntegers = WideIntegers.create(programIDL, options);
+    final var idl = wideIntegers.idl();
+    final var packagePath = packagePath(packageName);
+    final var typesPath = packagePath + "types/";
     final var typesPackage = packageName + ".types";
-    createDirectories(typesDir);
+    if (options.idlJson() && idl.json() != null) {
+      sink.accept(packagePath + "idl.json", idl.json());
+    }
 
     final var programName = AnchorUtil.camelCase(idl.name(), true);
-    final var tab = " ".repeat(tabLength);
+    final var tab = options.tab();
     final var imports = new TreeSet<String>();
     final var staticImports = new TreeSet<String>();
     final var accountMethods = HashMap.<PublicKey, AccountReferenceCall>newHashMap(1_024);
@@ -128,106 +249,149 @@ public record AnchorSourceGenerator(Path sourceDirectory,
         packageName,
         typesPackage,
         programName,
-        accountMethods
+        accountMethods,
+        new TypeLayouts(),
+        options
     );
+    genSrcContext.layouts().analyze(genSrcContext);
 
-    final var programSource = idl.generateSource(genSrcContext);
-    try {
-      Files.writeString(fullSrcDir.resolve(programName + "Program.java"), programSource, CREATE, TRUNCATE_EXISTING, WRITE);
-    } catch (final IOException e) {
-      throw new UncheckedIOException("Failed to write Program source code file.", e);
-    }
-
-    genSrcContext.clearImports();
-    final var pdaSource = idl.generatePDASource(genSrcContext);
-    if (pdaSource != null && !pdaSource.isBlank()) {
-      try {
-        Files.writeString(fullSrcDir.resolve(programName + "PDAs.java"), pdaSource, CREATE, TRUNCATE_EXISTING, WRITE);
-      } catch (final IOException e) {
-        throw new UncheckedIOException("Failed to write PDA source code file.", e);
+    // Each file is generated with its own import collectors so that files can be generated concurrently.
+    final var tasks = new ArrayList<Runnable>(12 + (idl.accounts().size() << 1) + idl.types().size() + idl.events().size());
+    tasks.add(() -> {
+      final var programSource = idl.generateSource(genSrcContext.withNewImports());
+      sink.accept(packagePath + programName + "Program.java", programSource);
+    });
+    tasks.add(() -> {
+      final var pdaSource = idl.generatePDASource(genSrcContext.withNewImports());
+      if (pdaSource != null && !pdaSource.isBlank()) {
+        sink.accept(packagePath + programName + "PDAs.java", pdaSource);
       }
-    }
-
-    genSrcContext.clearImports();
-    final var constantsSource = idl.generateConstantsSource(genSrcContext);
-    if (constantsSource != null && !constantsSource.isBlank()) {
-      try {
-        Files.writeString(fullSrcDir.resolve(programName + "Constants.java"), constantsSource, CREATE, TRUNCATE_EXISTING, WRITE);
-      } catch (final IOException e) {
-        throw new UncheckedIOException("Failed to write Constants source code file.", e);
+    });
+    tasks.add(() -> {
+      final var constantsSource = idl.generateConstantsSource(genSrcContext.withNewImports());
+      if (constantsSource != null && !constantsSource.isBlank()) {
+        sink.accept(packagePath + programName + "Constants.java", constantsSource);
       }
-    }
+    });
+    tasks.add(() -> {
+      final var errorSource = idl.generateErrorSource(genSrcContext.withNewImports());
+      if (errorSource != null && !errorSource.isBlank()) {
+        sink.accept(packagePath + programName + "Error.java", errorSource);
+      }
+    });
 
-    genSrcContext.clearImports();
-    final var errorSource = idl.generateErrorSource(genSrcContext);
-    if (errorSource != null && !errorSource.isBlank()) {
-      try {
-        Files.writeString(fullSrcDir.resolve(programName + "Error.java"), errorSource, CREATE, TRUNCATE_EXISTING, WRITE);
-      } catch (final IOException e) {
-        throw new UncheckedIOException("Failed to write error source code file.", e);
+    tasks.add(() -> {
+      final var accountsSource = idl.generateAccountsSource(genSrcContext.withNewImports());
+      if (accountsSource != null) {
+        sink.accept(packagePath + programName + "Accounts.java", accountsSource);
       }
-    }
+    });
+    tasks.add(() -> {
+      final var accountInterfaceSource = idl.generateAccountInterfaceSource(genSrcContext.withNewImports());
+      if (accountInterfaceSource != null) {
+        sink.accept(typesPath + genSrcContext.accountInterface() + ".java", accountInterfaceSource);
+      }
+    });
+    tasks.add(() -> {
+      final var eventsSource = idl.generateEventsSource(genSrcContext.withNewImports());
+      if (eventsSource != null) {
+        sink.accept(packagePath + programName + "Events.java", eventsSource);
+      }
+    });
+    tasks.add(() -> {
+      final var eventInterfaceSource = idl.generateEventInterfaceSource(genSrcContext.withNewImports());
+      if (eventInterfaceSource != null) {
+        sink.accept(typesPath + genSrcContext.eventInterface() + ".java", eventInterfaceSource);
+      }
+    });
 
     final var types = idl.types();
+    final var eventNames = new HashSet<String>();
+    for (final var event : idl.events()) {
+      eventNames.add(event.name());
+    }
     final var accounts = new HashSet<String>();
     for (final var account : idl.accounts().values()) {
-      genSrcContext.clearImports();
       final var namedType = account.type() == null
           ? types.get(account.name())
           : account;
       accounts.add(namedType.name());
       if (namedType.type() instanceof AnchorStruct struct) {
-        final var sourceCode = struct.generateSource(genSrcContext, genSrcContext.typePackage(), namedType, true, account);
-        try {
-          Files.writeString(typesDir.resolve(namedType.name() + ".java"), sourceCode, CREATE, TRUNCATE_EXISTING, WRITE);
-        } catch (final IOException e) {
-          throw new UncheckedIOException("Failed to write Account source code file.", e);
+        final boolean isEvent = eventNames.contains(namedType.name());
+        tasks.add(() -> {
+          final var sourceCode = struct.generateSource(
+              genSrcContext.withNewImports(), genSrcContext.typePackage(), namedType, true, account, isEvent
+          );
+          sink.accept(typesPath + namedType.name() + ".java", sourceCode);
+        });
+        // As with nested types, views are only generated where every field is at a fixed offset.
+        if (genSrcContext.layout(namedType.name()).fixedLength()) {
+          tasks.add(() -> {
+            final var sourceCode = struct.generateViewSource(genSrcContext.withNewImports(), genSrcContext.typePackage(), namedType);
+            sink.accept(typesPath + namedType.name() + "View.java", sourceCode);
+          });
         }
       } else {
         throw new IllegalStateException("Unexpected anchor account type " + namedType);
       }
     }
 
-    for (final var namedType : idl.types().values()) {
+    // Events which reference a defined type are generated with the events, not the types.
+    final var events = new HashSet<String>();
+    for (final var event : idl.events()) {
+      final var namedType = event.type() == null
+          ? types.get(event.name())
+          : event;
+      events.add(namedType.name());
       if (accounts.contains(namedType.name())) {
+        // Generated with the accounts, implementing both the account and event interfaces.
         continue;
       }
-      genSrcContext.clearImports();
-      final var sourceCode = switch (namedType.type()) {
-        case AnchorStruct struct ->
-            struct.generateSource(genSrcContext, genSrcContext.typePackage(), namedType, false, null);
-        case AnchorEnum anchorEnum -> anchorEnum.generateSource(genSrcContext, namedType);
-        case AnchorVector anchorVector -> {
-          logger.log(System.Logger.Level.WARNING, "Ignoring defined vector type: " + anchorVector);
-          yield null;
-        }
-        case null, default -> throw new IllegalStateException("Unexpected anchor defined type " + namedType);
-      };
-      if (sourceCode != null) {
-        try {
-          Files.writeString(typesDir.resolve(namedType.name() + ".java"), sourceCode, CREATE, TRUNCATE_EXISTING, WRITE);
-        } catch (final IOException e) {
-          throw new UncheckedIOException("Failed to write source code file.", e);
-        }
+      if (namedType.type() instanceof AnchorStruct struct) {
+        tasks.add(() -> {
+          final var sourceCode = struct.generateEventSource(genSrcContext.withNewImports(), genSrcContext.typePackage(), namedType);
+          sink.accept(typesPath + namedType.name() + ".java", sourceCode);
+        });
+      } else {
+        throw new IllegalStateException("Unexpected anchor defined event " + namedType);
       }
     }
 
-    for (final var event : idl.events()) {
-      genSrcContext.clearImports();
-      final var namedType = event.type() == null
-          ? types.get(event.name())
-          : event;
-      try {
-        if (namedType.type() instanceof AnchorStruct struct) {
-          final var sourceCode = struct.generateSource(genSrcContext, genSrcContext.typePackage(), namedType, false, null);
-          Files.writeString(typesDir.resolve(namedType.name() + ".java"), sourceCode, CREATE, TRUNCATE_EXISTING, WRITE);
-        } else {
-          throw new IllegalStateException("Unexpected anchor defined event " + namedType);
-        }
-      } catch (final IOException e) {
-        throw new UncheckedIOException("Failed to write Event source code file.", e);
+    for (final var entry : wideIntegers.valueTypes().entrySet()) {
+      tasks.add(() -> {
+        final var sourceCode = wideIntegers.generateSource(genSrcContext.withNewImports(), entry.getKey());
+        sink.accept(typesPath + entry.getValue() + ".java", sourceCode);
+      });
+    }
+
+    for (final var namedType : idl.types().values()) {
+      if (!accounts.contains(namedType.name())
+          && namedType.type() instanceof AnchorStruct struct
+          && AnchorStruct.hasNestedView(genSrcContext, namedType.name())) {
+        tasks.add(() -> {
+          final var sourceCode = struct.generateViewSource(genSrcContext.withNewImports(), genSrcContext.typePackage(), namedType);
+          sink.accept(typesPath + namedType.name() + "View.java", sourceCode);
+        });
+      }
+      if (accounts.contains(namedType.name()) || events.contains(namedType.name()) || wideIntegers.isValueType(namedType.name())) {
+        continue;
+      }
+      switch (namedType.type()) {
+        case AnchorStruct struct -> tasks.add(() -> {
+          final var sourceCode = struct.generateSource(genSrcContext.withNewImports(), genSrcContext.typePackage(), namedType, false, null);
+          sink.accept(typesPath + namedType.name() + ".java", sourceCode);
+        });
+        case AnchorEnum anchorEnum -> tasks.add(() -> {
+          final var sourceCode = anchorEnum.generateSource(genSrcContext.withNewImports(), namedType);
+          sink.accept(typesPath + namedType.name() + ".java", sourceCode);
+        });
+        case AnchorVector anchorVector ->
+            logger.log(System.Logger.Level.WARNING, "Ignoring defined vector type: " + anchorVector);
+        case null, default -> throw new IllegalStateException("Unexpected anchor defined type " + namedType);
       }
     }
+
+    runAll(tasks);
   }
 
   public void addExports(final Set<String> exports) {
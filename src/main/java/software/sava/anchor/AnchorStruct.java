@@ -2,21 +2,21 @@ package software.sava.anchor;
 
 import software.sava.core.accounts.PublicKey;
 import software.sava.core.borsh.Borsh;
+import software.sava.core.encoding.ByteUtil;
 import software.sava.core.programs.Discriminator;
 import software.sava.core.rpc.Filter;
 import systems.comodal.jsoniter.JsonIterator;
 
+import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
 
-import static software.sava.anchor.AnchorInstruction.replaceNewLinesIfLessThan;
 import static software.sava.anchor.AnchorNamedTypeParser.parseLowerList;
-import static software.sava.anchor.AnchorSourceGenerator.removeBlankLines;
 import static software.sava.anchor.AnchorType.string;
+import static software.sava.anchor.SourceWriter.joinLines;
 import static software.sava.core.rpc.Filter.MAX_MEM_COMP_LENGTH;
 
 public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefinedTypeContext {
@@ -46,9 +46,7 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
                                final boolean isAccount,
                                final AnchorNamedType account,
                                final boolean hasDiscriminator) {
-    final var tab = genSrcContext.tab();
-    final int tabLength = tab.length();
-    final var builder = new StringBuilder(4_096);
+    final var out = new SourceWriter(genSrcContext.tab(), 4_096);
     final var paramsBuilder = new StringBuilder(4_096);
 
     final var name = context.name();
@@ -57,29 +55,22 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
         + String.format("record %s(", name);
 
     if (fields.isEmpty()) {
-      builder.append(context.docComments());
-      builder.append(recordSigLine).append(String.format("""
-          ) implements %s {
-          
-          """, interfaceName));
-      builder.append(String.format("""
-          private static final %s INSTANCE = new %s();
-          
-          public static %s read(final byte[] _data, final int offset) {
-          %sreturn INSTANCE;
-          }
-          
-          @Override
-          public int write(final byte[] _data, final int offset) {
-          %sreturn 0;
-          }
-          
-          @Override
-          public int l() {
-          %sreturn 0;
-          }
-          """, name, name, name, tab, tab, tab).indent(tabLength));
-      return removeBlankLines(builder.append('}').toString());
+      out.append(context.docComments());
+      out.append(recordSigLine).append(") implements ").append(interfaceName).line(" {").newLine();
+      out.indent();
+      out.append("private static final ").append(name).append(" INSTANCE = new ").append(name).line("();").newLine();
+      out.append("public static ").append(name).line(" read(final byte[] _data, final int offset) {");
+      out.indent().line("return INSTANCE;").outdent();
+      out.line("}").newLine();
+      out.line("@Override");
+      out.line("public int write(final byte[] _data, final int offset) {");
+      out.indent().line("return 0;").outdent();
+      out.line("}").newLine();
+      out.line("@Override");
+      out.line("public int l() {");
+      out.indent().line("return 0;").outdent();
+      out.line("}");
+      return out.outdent().append('}').toString();
     }
 
     final StringBuilder offsetsBuilder;
@@ -97,100 +88,114 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
       offsetsBuilder = null;
       memCompFiltersBuilder = null;
     }
-    int byteLength = hasDiscriminator ? AnchorUtil.DISCRIMINATOR_LENGTH : 0;
-    var fieldIterator = fields.iterator();
-    for (AnchorNamedType field; ; ) {
-      field = fieldIterator.next();
-      if (byteLength >= 0) {
-        final var type = field.type();
-        if (offsetsBuilder == null) {
-          if (type.isFixedLength(genSrcContext.definedTypes())) {
-            byteLength += type.serializedLength(genSrcContext);
-          } else {
-            byteLength = -1;
-          }
-        } else {
-          final var offsetVarName = AnchorUtil.snakeCase(field.name())
-              .toUpperCase(Locale.ENGLISH) + "_OFFSET";
-          offsetsBuilder.append(String.format("""
-                  public static final int %s = %d;
+    final var layout = genSrcContext.definedTypes().get(name) == context && genSrcContext.isAccount(name) == hasDiscriminator
+        ? genSrcContext.layout(name)
+        : TypeLayouts.structLayout(genSrcContext, fields, hasDiscriminator);
+    final int byteLength = layout.fixedLength() ? layout.serializedLength() : -1;
+    final int[] packedBits = packedOptionalBits(genSrcContext, fields);
+    final boolean hasPackedOptionals = packedBits != null;
+    final int[] paddingLengths = paddingLengths(genSrcContext, fields);
+    final SliceField[] sliceFields = sliceFields(genSrcContext, fields);
+    int numParams = 0;
+    for (int f = 0, numFields = fields.size(); f < numFields; ++f) {
+      final var field = fields.get(f);
+      final int fieldOffset = layout.fieldOffset(f);
+      if (offsetsBuilder != null && fieldOffset >= 0) {
+        final var offsetVarName = AnchorUtil.snakeCase(field.name())
+            .toUpperCase(Locale.ENGLISH) + "_OFFSET";
+        offsetsBuilder.append(String.format("""
+                public static final int %s = %d;
+                """,
+            offsetVarName, fieldOffset
+        ));
+        final int fieldLength = layout.fieldLength(f);
+        final int serializedLength = fieldLength < 0 ? field.type().fixedSerializedLength(genSrcContext) : fieldLength;
+        if (serializedLength > 0 && serializedLength <= MAX_MEM_COMP_LENGTH) {
+          field.generateMemCompFilter(genSrcContext, memCompFiltersBuilder, offsetVarName);
+        }
+        if (field.type() instanceof AnchorPrimitive primitive && primitive.hasInPlaceEquals()) {
+          final var varName = field.name();
+          memCompFiltersBuilder.append(String.format("""
+                  
+                  public static boolean %sEquals(final byte[] _data, final int offset, final %s value) {
+                  %sreturn %s;
+                  }
                   """,
-              offsetVarName, byteLength
+              varName, primitive.typeName(),
+              genSrcContext.tab(), primitive.generateEquals(genSrcContext, "offset + " + offsetVarName, "value")
           ));
-          if (type.isFixedLength(genSrcContext.definedTypes())) {
-            final int serializedLength = type.serializedLength(genSrcContext);
-            if (serializedLength <= MAX_MEM_COMP_LENGTH) {
-              field.generateMemCompFilter(genSrcContext, memCompFiltersBuilder, offsetVarName);
-            }
-            byteLength += serializedLength;
-          } else {
-            final int serializedLength = type.fixedSerializedLength(genSrcContext);
-            if (serializedLength > 0 && serializedLength <= MAX_MEM_COMP_LENGTH) {
-              field.generateMemCompFilter(genSrcContext, memCompFiltersBuilder, offsetVarName);
-            }
-            byteLength = -1;
-          }
         }
       }
-      paramsBuilder.append(field.generateRecordField(genSrcContext));
-      if (fieldIterator.hasNext()) {
+      if (paddingLengths != null && paddingLengths[f] >= 0) {
+        continue;
+      }
+      if (numParams++ > 0) {
         paramsBuilder.append(",\n");
+      }
+      if (hasPackedOptionals && packedBits[f] >= 0) {
+        paramsBuilder.append(((AnchorOption) field.type()).genericType().generateRecordField(genSrcContext, field, false));
+      } else if (sliceFields != null && sliceFields[f] != null) {
+        paramsBuilder.append(sliceFields[f].generateRecordField(genSrcContext, field));
       } else {
-        break;
+        paramsBuilder.append(field.generateRecordField(genSrcContext));
       }
     }
+    if (hasPackedOptionals) {
+      paramsBuilder.append(",\nlong _present");
+      ++numParams;
+    }
 
-    final var params = paramsBuilder.toString().indent(recordSigLine.length()).strip();
-
-    builder
-        .append(context.docComments())
-        .append(recordSigLine)
-        .append(replaceNewLinesIfLessThan(params, fields.size(), 3))
-        .append(String.format("""
-            ) implements %s {
-            
-            """, interfaceName));
+    out.append(context.docComments()).append(recordSigLine);
+    out.appendLines(paramsBuilder, recordSigLine.length(), joinLines(paramsBuilder, numParams, 3));
+    out.append(") implements ").append(interfaceName).line(" {").newLine();
+    out.indent();
     if (byteLength > 0) {
-      builder.append(tab).append(String.format("""
-              public static final int BYTES = %d;
-              """,
-          byteLength));
+      out.append("public static final int BYTES = ").append(byteLength).line(";");
     }
     if (isAccount) {
       if (byteLength > 0) {
-        builder.append(tab).append("""
-            public static final Filter SIZE_FILTER = Filter.createDataSizeFilter(BYTES);
-            
-            """);
+        out.line("public static final Filter SIZE_FILTER = Filter.createDataSizeFilter(BYTES);").newLine();
         genSrcContext.addImport(Filter.class);
       }
 
-      final var discriminator = account.discriminator();
-      if (discriminator != null) {
-        genSrcContext.addImport(Filter.class);
-        genSrcContext.addImport(Discriminator.class);
-        genSrcContext.addStaticImport(Discriminator.class, "toDiscriminator");
+      final var discriminator = AnchorIDL.accountDiscriminator(account);
+      genSrcContext.addImport(Filter.class);
+      genSrcContext.addImport(Discriminator.class);
+      genSrcContext.addStaticImport(Discriminator.class, "toDiscriminator");
 
-        final var discriminatorLine = Arrays.stream(discriminator.toIntArray())
-            .mapToObj(Integer::toString)
-            .collect(Collectors.joining(", ",
-                "public static final Discriminator DISCRIMINATOR = toDiscriminator(", ");"));
-        builder.append(tab).append(discriminatorLine);
-        builder.append("\n").append(tab).append("""
-            public static final Filter DISCRIMINATOR_FILTER = Filter.createMemCompFilter(0, DISCRIMINATOR.data());
-            
-            """);
+      out.append("public static final Discriminator DISCRIMINATOR = toDiscriminator(");
+      final var discriminatorData = discriminator.toIntArray();
+      for (int i = 0; i < discriminatorData.length; ++i) {
+        if (i > 0) {
+          out.append(", ");
+        }
+        out.append(discriminatorData[i]);
       }
+      out.line(");");
+      if (AnchorIDL.hasLongDiscriminator(account)) {
+        out.append("public static final long DISCRIMINATOR_LONG = ").append(discriminatorLong(discriminator)).line(";");
+      }
+      out.line("public static final Filter DISCRIMINATOR_FILTER = Filter.createMemCompFilter(0, DISCRIMINATOR.data());").newLine();
 
       if (!offsetsBuilder.isEmpty()) {
-        builder.append(offsetsBuilder.toString().indent(tabLength));
-        builder.append(memCompFiltersBuilder.toString().indent(tabLength)).append('\n');
+        out.append(offsetsBuilder).endLine();
+        out.append(memCompFiltersBuilder).endLine().newLine();
       }
     } else if (byteLength > 0) {
-      builder.append('\n');
+      out.newLine();
+    }
+
+    final boolean segmentCodec = ordinal < 0 && byteLength > 0 && hasSegmentCodec(genSrcContext, fields);
+    if (segmentCodec) {
+      appendSegmentLayout(out, genSrcContext, fields, hasDiscriminator);
     }
 
+    final var newInstanceBuilder = newInstanceArguments(
+        genSrcContext, fields, isAccount, hasDiscriminator, hasPackedOptionals, paddingLengths, false
+    );
+    final boolean joinNewInstanceParams = joinLines(newInstanceBuilder, numParams, 4);
     final var returnNewLine = String.format("return new %s(", name);
+
     if (fields.stream().anyMatch(namedType -> namedType.type().type() == string)) {
       final var factoryMethodBuilder = new StringBuilder(2_048);
       if (isAccount) {
@@ -199,105 +204,289 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
       if (hasDiscriminator) {
         factoryMethodBuilder.append("final Discriminator discriminator,\n");
       }
-      fieldIterator = fields.iterator();
-      for (AnchorNamedType field; ; ) {
-        field = fieldIterator.next();
-        factoryMethodBuilder.append("final ").append(field.generateStaticFactoryField(genSrcContext));
-        if (fieldIterator.hasNext()) {
+      for (int f = 0, numFields = fields.size(), numFactoryParams = 0; f < numFields; ++f) {
+        if (paddingLengths != null && paddingLengths[f] >= 0) {
+          continue;
+        }
+        if (numFactoryParams++ > 0) {
           factoryMethodBuilder.append(",\n");
+        }
+        final var field = fields.get(f);
+        factoryMethodBuilder.append("final ");
+        if (hasPackedOptionals && packedBits[f] >= 0) {
+          factoryMethodBuilder.append(((AnchorOption) field.type()).genericType()
+              .generateStaticFactoryField(genSrcContext, field.name(), false));
+        } else if (sliceFields != null && sliceFields[f] != null) {
+          factoryMethodBuilder.append(sliceFields[f].typeName()).append(' ').append(field.name());
         } else {
-          break;
+          factoryMethodBuilder.append(field.generateStaticFactoryField(genSrcContext));
         }
       }
+      if (hasPackedOptionals) {
+        factoryMethodBuilder.append(",\nfinal long _present");
+      }
 
       final var staticFactoryLine = String.format("public static %s createRecord(", name);
-      final var staticFactoryParams = factoryMethodBuilder.toString().indent(staticFactoryLine.length() + tabLength).strip();
-      builder.append(tab).append(staticFactoryLine);
-      builder.append(replaceNewLinesIfLessThan(staticFactoryParams, fields.size(), 3))
-          .append("""
-              ) {
-              """);
-
-      final var newInstanceBuilder = new StringBuilder(2_048);
-      if (isAccount) {
-        newInstanceBuilder.append("_address,\n");
-      }
-      if (hasDiscriminator) {
-        newInstanceBuilder.append("discriminator,\n");
-      }
-      fieldIterator = fields.iterator();
-      for (AnchorNamedType field; ; ) {
-        field = fieldIterator.next();
-        newInstanceBuilder.append(field.generateNewInstanceField(genSrcContext));
-        if (fieldIterator.hasNext()) {
-          newInstanceBuilder.append(",\n");
-        } else {
-          break;
-        }
+      out.append(staticFactoryLine);
+      out.appendLines(factoryMethodBuilder, staticFactoryLine.length(), joinLines(factoryMethodBuilder, numParams, 3));
+      out.line(") {");
+      out.indent();
+      if (fields.stream().anyMatch(field -> isLazyString(genSrcContext, field))) {
+        final var factoryInstanceBuilder = newInstanceArguments(
+            genSrcContext, fields, isAccount, hasDiscriminator, hasPackedOptionals, paddingLengths, true
+        );
+        out.append(returnNewLine)
+            .appendLines(factoryInstanceBuilder, returnNewLine.length(), joinLines(factoryInstanceBuilder, numParams, 4))
+            .line(");");
+      } else {
+        out.append(returnNewLine).appendLines(newInstanceBuilder, returnNewLine.length(), joinNewInstanceParams).line(");");
       }
-      final var newInstanceParams = newInstanceBuilder.toString().indent(returnNewLine.length() + tabLength + tabLength).strip();
-      builder
-          .append(tab).append(tab).append(returnNewLine)
-          .append(replaceNewLinesIfLessThan(newInstanceParams, fields.size(), 4))
-          .append(");\n")
-          .append(tab).append("}\n\n");
+      out.outdent();
+      out.line("}").newLine();
     }
 
-    final var readBuilder = new StringBuilder(4_096);
-    final boolean singleField = !hasDiscriminator && fields.size() == 1;
-    final var offsetVarName = singleField ? "offset" : "i";
-    fieldIterator = fields.iterator();
-    for (AnchorNamedType field; ; ) {
-      field = fieldIterator.next();
-      final boolean hasNext = fieldIterator.hasNext();
-      readBuilder.append(field.generateRead(genSrcContext, hasNext, singleField, offsetVarName)).append('\n');
-      if (!hasNext) {
-        break;
-      }
+    final boolean checkDiscriminator = isAccount && AnchorIDL.hasLongDiscriminator(account);
+    if (checkDiscriminator) {
+      genSrcContext.addStaticImport(ByteUtil.class, "getInt64LE");
+      out.append("public static boolean is").append(name).line("(final byte[] _data, final int offset) {");
+      out.indent();
+      out.append("return _data.length - offset >= ").append(AnchorUtil.DISCRIMINATOR_LENGTH)
+          .line(" && getInt64LE(_data, offset) == DISCRIMINATOR_LONG;");
+      out.outdent();
+      out.line("}").newLine();
     }
-    builder.append(String.format("public static %s read(final byte[] _data, final int offset) {", name).indent(tabLength));
+
+    out.append("public static ").append(name).line(" read(final byte[] _data, final int offset) {");
+    out.indent();
+    final boolean singleField = !hasDiscriminator && fields.size() == 1;
     if (isAccount) {
-      builder.append(String.format("""
-              %sreturn read(null, _data, offset);
-              }
-              
-              public static %s read(final PublicKey _address, final byte[] _data) {
-              %sreturn read(_address, _data, 0);
-              }
-              
-              public static final BiFunction<PublicKey, byte[], %s> FACTORY = %s::read;
-              
-              public static %s read(final PublicKey _address, final byte[] _data, final int offset) {""",
-          tab, name, tab, name, name, name).indent(tabLength));
-      builder.append("""
-          if (_data == null || _data.length == 0) {""".indent(tabLength << 1));
-      builder.append(tab).append("""
-          return null;
-          }
-          final var discriminator = parseDiscriminator(_data, offset);
-          int i = offset + discriminator.length();""".indent(tabLength << 1)
-      );
+      out.line("return read(null, _data, offset);");
+      out.outdent().line("}").newLine();
+      out.append("public static ").append(name).line(" read(final PublicKey _address, final byte[] _data) {");
+      out.indent().line("return read(_address, _data, 0);").outdent();
+      out.line("}").newLine();
+      out.append("public static final BiFunction<PublicKey, byte[], ").append(name).append("> FACTORY = ")
+          .append(name).line("::read;").newLine();
+      out.append("public static ").append(name).line(" read(final PublicKey _address, final byte[] _data, final int offset) {");
+      out.indent();
+      out.line("if (_data == null || _data.length == 0) {");
+      out.indent().line("return null;").outdent();
+      out.line("}");
+      if (checkDiscriminator) {
+        out.append("final var discriminator = is").append(name).line("(_data, offset) ? DISCRIMINATOR : parseDiscriminator(_data, offset);");
+      } else {
+        out.line("final var discriminator = parseDiscriminator(_data, offset);");
+      }
+      out.line("int i = offset + discriminator.length();");
       genSrcContext.addImport(BiFunction.class);
       genSrcContext.addImport(PublicKey.class);
       genSrcContext.addStaticImport(AnchorUtil.class, "parseDiscriminator");
     } else {
-      builder.append("""
-          if (_data == null || _data.length == 0) {""".indent(tabLength << 1));
-      builder.append(tab).append("""
-          return null;
-          }""".indent(tabLength << 1)
-      );
+      out.line("if (_data == null || _data.length == 0) {");
+      out.indent().line("return null;").outdent();
+      out.line("}");
       if (hasDiscriminator) {
-        builder.append("""
-            final var discriminator = parseDiscriminator(_data, offset);
-            int i = offset + discriminator.length();""".indent(tabLength << 1)
-        );
+        out.line("final var discriminator = parseDiscriminator(_data, offset);");
+        out.line("int i = offset + discriminator.length();");
         genSrcContext.addStaticImport(AnchorUtil.class, "parseDiscriminator");
       } else if (!singleField) {
-        builder.append(tab).append(tab).append("int i = offset;\n");
+        out.line("int i = offset;");
+      }
+    }
+    final var offsetVarName = singleField ? "offset" : "i";
+    if (hasPackedOptionals) {
+      out.line("long _present = 0;");
+    }
+    for (int f = 0, numFields = fields.size(); f < numFields; ++f) {
+      final var field = fields.get(f);
+      final boolean hasNext = f + 1 < numFields;
+      if (paddingLengths != null && paddingLengths[f] >= 0) {
+        if (hasNext) {
+          out.append("i += ").append(paddingLengths[f]).line(";");
+        }
+      } else if (hasPackedOptionals && packedBits[f] >= 0) {
+        out.append(((AnchorOption) field.type()).generatePackedRead(
+            genSrcContext, field.name(), packedBits[f], hasNext, singleField, offsetVarName
+        )).newLine();
+      } else if (sliceFields != null && sliceFields[f] != null) {
+        out.append(sliceFields[f].generateRead(genSrcContext, field.name(), hasNext, offsetVarName)).newLine();
+      } else {
+        out.append(field.generateRead(genSrcContext, hasNext, singleField, offsetVarName)).newLine();
       }
     }
-    builder.append(readBuilder.toString().indent(tabLength << 1));
+    out.append(returnNewLine).appendLines(newInstanceBuilder, returnNewLine.length(), joinNewInstanceParams).line(");");
+    out.outdent();
+    out.line("}").newLine();
+
+    out.line("@Override");
+    out.line("public int write(final byte[] _data, final int offset) {");
+    out.indent();
+    if (ordinal < 0) {
+      if (hasDiscriminator) {
+        out.line("int i = offset + discriminator.write(_data, offset);");
+      } else {
+        out.line("int i = offset;");
+      }
+    } else {
+      out.line("int i = writeOrdinal(_data, offset);");
+    }
+    for (int f = 0, numFields = fields.size(); f < numFields; ++f) {
+      final var field = fields.get(f);
+      if (paddingLengths != null && paddingLengths[f] >= 0) {
+        if (genSrcContext.options().padding() == GenSrcOptions.Padding.ZERO) {
+          genSrcContext.addImport(Arrays.class);
+          out.append("Arrays.fill(_data, i, i + ").append(paddingLengths[f]).line(", (byte) 0);");
+        }
+        out.append("i += ").append(paddingLengths[f]).line(";");
+      } else if (hasPackedOptionals && packedBits[f] >= 0) {
+        out.append(((AnchorOption) field.type()).generatePackedWrite(genSrcContext, field.name(), packedBits[f])).newLine();
+      } else if (sliceFields != null && sliceFields[f] != null) {
+        out.append(sliceFields[f].generateWrite(genSrcContext, field.name())).newLine();
+      } else {
+        out.append(field.generateWrite(genSrcContext, true)).newLine();
+      }
+    }
+    out.line("return i - offset;");
+    out.outdent();
+    out.line("}").newLine();
+
+    if (segmentCodec) {
+      appendSegmentCodec(out, genSrcContext, name, fields, layout, paddingLengths, isAccount, hasDiscriminator);
+    }
+
+    out.line("@Override");
+    out.line("public int l() {");
+    out.indent();
+    if (byteLength > 0) {
+      out.line("return BYTES;");
+    } else {
+      final var lengthBuilder = new StringBuilder(4_096);
+      for (int f = 0, numFields = fields.size(); ; ) {
+        final var field = fields.get(f);
+        if (paddingLengths != null && paddingLengths[f] >= 0) {
+          lengthBuilder.append(paddingLengths[f]);
+        } else if (hasPackedOptionals && packedBits[f] >= 0) {
+          lengthBuilder.append(((AnchorOption) field.type()).generatePackedLength(packedBits[f]));
+        } else if (sliceFields != null && sliceFields[f] != null) {
+          lengthBuilder.append(sliceFields[f].generateLength(field.name()));
+        } else {
+          lengthBuilder.append(field.generateLength(genSrcContext));
+        }
+        if (++f < numFields) {
+          lengthBuilder.append('\n').append(LENGTH_ADD_ALIGN_TAB).append("+ ");
+        } else {
+          break;
+        }
+      }
+      if (ordinal < 0) {
+        if (hasDiscriminator) {
+          out.append("return ").append(AnchorUtil.DISCRIMINATOR_LENGTH).append(" + ");
+        } else {
+          out.append("return ");
+        }
+      } else {
+        out.append("return 1 + ");
+      }
+      out.appendLines(lengthBuilder, 0, joinLines(lengthBuilder, fields.size(), 5)).line(";");
+    }
+    out.outdent();
+    out.line("}");
+
+    if (hasPackedOptionals) {
+      for (int f = 0, numFields = fields.size(); f < numFields; ++f) {
+        if (packedBits[f] >= 0) {
+          out.newLine();
+          out.append("public boolean ").append(packedPresentAccessor(fields.get(f))).line("() {");
+          out.indent().append("return ").append(AnchorOption.packedPresentCheck(packedBits[f])).line(";").outdent();
+          out.line("}");
+        }
+      }
+    }
+
+    for (final var field : fields) {
+      if (isLazyString(genSrcContext, field)) {
+        final var fieldName = field.name();
+        out.newLine();
+        out.append("public String ").append(fieldName).line("() {");
+        out.indent();
+        if (field.type() instanceof AnchorOption) {
+          out.append("return _").append(fieldName).append(" == null ? null : _").append(fieldName).line(".toString();");
+        } else {
+          out.append("return _").append(fieldName).line(".toString();");
+        }
+        out.outdent();
+        out.line("}");
+      }
+    }
+
+    if (ordinal >= 0) {
+      out.newLine();
+      out.line("@Override");
+      out.line("public int ordinal() {");
+      out.indent().append("return ").append(ordinal).line(";").outdent();
+      out.line("}");
+    }
+
+    return out.outdent().append('}').toString();
+  }
+
+  // The serialized length of each padding field, which is skipped on read and not a record component, or -1 for every
+  // other field. Null if padding is kept, or if there is none or only padding. See GenSrcOptions.padding.
+  private static int[] paddingLengths(final GenSrcContext genSrcContext, final List<AnchorNamedType> fields) {
+    final var options = genSrcContext.options();
+    if (options.padding() == GenSrcOptions.Padding.KEEP) {
+      return null;
+    }
+    final int[] lengths = new int[fields.size()];
+    int numPadding = 0;
+    for (int f = 0; f < lengths.length; ++f) {
+      final var field = fields.get(f);
+      if (field.type() instanceof AnchorArray(final AnchorPrimitive primitive, final int depth, final int numElements)
+          && depth == 1
+          && primitive.type().dataLength() > 0
+          && options.paddingFields().matcher(field.name()).matches()) {
+        lengths[f] = numElements * primitive.type().dataLength();
+        ++numPadding;
+      } else {
+        lengths[f] = -1;
+      }
+    }
+    return numPadding == 0 || numPadding == lengths.length ? null : lengths;
+  }
+
+  // The slice of each bytes, Vec<u8>, [u8; N] or [u64; N] field, or null for every other field. Null if fields are
+  // copied or there are none. See GenSrcOptions.slices.
+  private static SliceField[] sliceFields(final GenSrcContext genSrcContext, final List<AnchorNamedType> fields) {
+    if (genSrcContext.options().slices() == GenSrcOptions.Slices.COPY) {
+      return null;
+    }
+    final var sliceFields = new SliceField[fields.size()];
+    boolean hasSliceFields = false;
+    for (int f = 0; f < sliceFields.length; ++f) {
+      final var sliceField = SliceField.create(genSrcContext, fields.get(f).type());
+      if (sliceField != null) {
+        sliceFields[f] = sliceField;
+        hasSliceFields = true;
+      }
+    }
+    return hasSliceFields ? sliceFields : null;
+  }
+
+  private static boolean isLazyString(final GenSrcContext genSrcContext, final AnchorNamedType field) {
+    return field.type().type() == string
+        && (field.type() instanceof AnchorPrimitive || field.type() instanceof AnchorOption)
+        && genSrcContext.isLazyString(field.name());
+  }
+
+  // Arguments to the canonical constructor, the createRecord factory wraps the String parameters of lazy string
+  // fields, whereas read passes the LazyString it read.
+  private static StringBuilder newInstanceArguments(final GenSrcContext genSrcContext,
+                                                    final List<AnchorNamedType> fields,
+                                                    final boolean isAccount,
+                                                    final boolean hasDiscriminator,
+                                                    final boolean hasPackedOptionals,
+                                                    final int[] paddingLengths,
+                                                    final boolean factory) {
     final var newInstanceBuilder = new StringBuilder(2_048);
     if (isAccount) {
       newInstanceBuilder.append("_address,\n");
@@ -305,97 +494,503 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
     if (hasDiscriminator) {
       newInstanceBuilder.append("discriminator,\n");
     }
-    fieldIterator = fields.iterator();
-    for (AnchorNamedType field; ; ) {
-      field = fieldIterator.next();
-      newInstanceBuilder.append(field.generateNewInstanceField(genSrcContext));
-      if (fieldIterator.hasNext()) {
+    for (int f = 0, numFields = fields.size(), numArguments = 0; f < numFields; ++f) {
+      if (paddingLengths != null && paddingLengths[f] >= 0) {
+        continue;
+      }
+      if (numArguments++ > 0) {
         newInstanceBuilder.append(",\n");
+      }
+      final var field = fields.get(f);
+      if (factory && isLazyString(genSrcContext, field)) {
+        newInstanceBuilder.append("LazyString.of(").append(field.name()).append(')');
       } else {
-        break;
+        newInstanceBuilder.append(field.generateNewInstanceField(genSrcContext));
       }
     }
-    final var newInstanceParams = newInstanceBuilder.toString().indent(returnNewLine.length() + tabLength + tabLength).strip();
-    builder
-        .append(tab).append(tab).append(returnNewLine)
-        .append(replaceNewLinesIfLessThan(newInstanceParams, fields.size(), 4))
-        .append(");\n")
-        .append(tab).append("}\n\n");
+    if (hasPackedOptionals) {
+      newInstanceBuilder.append(",\n_present");
+    }
+    return newInstanceBuilder;
+  }
 
+  // The discriminator as a little-endian long literal, so that it can be compared and switched on without
+  // parsing the discriminator.
+  static String discriminatorLong(final Discriminator discriminator) {
+    return String.format("0x%016XL", ByteUtil.getInt64LE(discriminator.data(), 0));
+  }
+
+  private static String packedPresentAccessor(final AnchorNamedType field) {
+    return "has" + AnchorUtil.camelCase(field.name(), true);
+  }
 
-    final var writeBuilder = new StringBuilder(4_096);
+  // The bit in the record's _present bitset of each optional primitive field, or -1 for every other field. Null if
+  // packed optionals are disabled or there are none. Fields past the 64th, and fields whose generated has accessor
+  // would clash with the accessor of another field, keep their Optional encoding.
+  private static int[] packedOptionalBits(final GenSrcContext genSrcContext, final List<AnchorNamedType> fields) {
+    if (!genSrcContext.options().packedOptionals()) {
+      return null;
+    }
+    final var fieldNames = HashSet.<String>newHashSet(fields.size());
     for (final var field : fields) {
-      writeBuilder.append(field.generateWrite(genSrcContext, true)).append('\n');
+      fieldNames.add(field.name());
     }
-    builder.append("""
-        @Override
-        public int write(final byte[] _data, final int offset) {
-        """.indent(tabLength));
-    if (ordinal < 0) {
-      if (hasDiscriminator) {
-        builder.append("""
-            int i = offset + discriminator.write(_data, offset);""".indent(tabLength << 1));
+    final int[] bits = new int[fields.size()];
+    int bit = 0;
+    for (int f = 0; f < bits.length; ++f) {
+      final var field = fields.get(f);
+      if (bit < Long.SIZE
+          && field.type() instanceof AnchorOption option
+          && option.isPackable()
+          && !fieldNames.contains(packedPresentAccessor(field))) {
+        bits[f] = bit++;
+      } else {
+        bits[f] = -1;
+      }
+    }
+    return bit == 0 ? null : bits;
+  }
+
+  // Whether every field can be read from and written to a MemorySegment in place.
+  private static boolean hasSegmentCodec(final GenSrcContext genSrcContext, final List<AnchorNamedType> fields) {
+    for (final var field : fields) {
+      final boolean supported = switch (field.type()) {
+        case AnchorArray(final AnchorTypeContext genericType, final int depth, final int numElements) -> depth == 1
+            && numElements > 0
+            && SliceField.create(genSrcContext, field.type()) == null
+            && hasSegmentCodec(genSrcContext, genericType);
+        default -> hasSegmentCodec(genSrcContext, field.type());
+      };
+      if (!supported) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasSegmentCodec(final GenSrcContext genSrcContext, final AnchorTypeContext type) {
+    return switch (type) {
+      case AnchorPrimitive primitive -> primitive.type().dataLength() > 0;
+      case AnchorDefined defined -> !genSrcContext.isAccount(defined.typeName())
+          && genSrcContext.definedTypes().get(defined.typeName()).type() instanceof AnchorStruct(final List<AnchorNamedType> definedFields)
+          && !definedFields.isEmpty()
+          && genSrcContext.layout(defined.typeName()).fixedLength()
+          && hasSegmentCodec(genSrcContext, definedFields);
+      default -> false;
+    };
+  }
+
+  private static String valueLayout(final AnchorType type) {
+    return switch (type) {
+      case bool, i8, u8 -> "JAVA_BYTE";
+      case i16, u16 -> "JAVA_SHORT_UNALIGNED.withOrder(LITTLE_ENDIAN)";
+      case i32, u32 -> "JAVA_INT_UNALIGNED.withOrder(LITTLE_ENDIAN)";
+      case i64, u64, usize -> "JAVA_LONG_UNALIGNED.withOrder(LITTLE_ENDIAN)";
+      case f32 -> "JAVA_FLOAT_UNALIGNED.withOrder(LITTLE_ENDIAN)";
+      case f64 -> "JAVA_DOUBLE_UNALIGNED.withOrder(LITTLE_ENDIAN)";
+      default -> null;
+    };
+  }
+
+  // The layout of a single primitive or defined type value, primitives without a value layout are byte sequences.
+  private static String segmentLayout(final GenSrcContext genSrcContext, final AnchorTypeContext type) {
+    if (type instanceof AnchorPrimitive(final AnchorType primitive)) {
+      final var valueLayout = valueLayout(primitive);
+      if (valueLayout == null) {
+        return "MemoryLayout.sequenceLayout(" + primitive.dataLength() + ", JAVA_BYTE)";
+      }
+      final int withOrder = valueLayout.indexOf('.');
+      if (withOrder < 0) {
+        genSrcContext.addStaticImport("java.lang.foreign.ValueLayout." + valueLayout);
       } else {
-        builder.append(tab).append(tab).append("int i = offset;\n");
+        genSrcContext.addStaticImport("java.lang.foreign.ValueLayout." + valueLayout.substring(0, withOrder));
+        genSrcContext.addStaticImport("java.nio.ByteOrder.LITTLE_ENDIAN");
       }
+      return valueLayout;
     } else {
-      builder.append(tab).append(tab).append("int i = writeOrdinal(_data, offset);\n");
-    }
-    builder.append(writeBuilder.toString().indent(tabLength << 1));
-    builder.append(tab).append(tab).append("return i - offset;\n");
-    builder.append(tab).append("}\n\n");
-
-    final var lengthBuilder = new StringBuilder(4_096);
-    fieldIterator = fields.iterator();
-    for (AnchorNamedType field; ; ) {
-      field = fieldIterator.next();
-      lengthBuilder.append(field.generateLength(genSrcContext));
-      if (fieldIterator.hasNext()) {
-        lengthBuilder.append('\n').append(tab).append(tab).append(LENGTH_ADD_ALIGN_TAB).append("+ ");
+      return type.typeName() + ".LAYOUT";
+    }
+  }
+
+  private static String handleName(final AnchorNamedType field) {
+    return AnchorUtil.snakeCase(field.name()).toUpperCase(Locale.ENGLISH) + "_HANDLE";
+  }
+
+  private static void appendSegmentLayout(final SourceWriter out,
+                                          final GenSrcContext genSrcContext,
+                                          final List<AnchorNamedType> fields,
+                                          final boolean hasDiscriminator) {
+    genSrcContext.addImport("java.lang.foreign.MemoryLayout");
+    genSrcContext.addImport("java.lang.foreign.StructLayout");
+    genSrcContext.addImport("java.lang.invoke.VarHandle");
+    genSrcContext.addStaticImport("java.lang.foreign.ValueLayout.JAVA_BYTE");
+    out.line("public static final StructLayout LAYOUT = MemoryLayout.structLayout(");
+    out.indent().indent();
+    if (hasDiscriminator) {
+      out.append("MemoryLayout.sequenceLayout(").append(AnchorUtil.DISCRIMINATOR_LENGTH).line(", JAVA_BYTE).withName(\"discriminator\"),");
+    }
+    for (int f = 0, numFields = fields.size(); f < numFields; ++f) {
+      final var field = fields.get(f);
+      if (field.type() instanceof AnchorArray(final AnchorTypeContext genericType, final int depth, final int numElements)) {
+        out.append("MemoryLayout.sequenceLayout(").append(numElements).append(", ")
+            .append(segmentLayout(genSrcContext, genericType)).append(')');
       } else {
-        break;
+        out.append(segmentLayout(genSrcContext, field.type()));
       }
+      out.append(".withName(\"").append(field.name()).append("\")");
+      out.line(f + 1 < numFields ? "," : "");
     }
+    out.outdent().outdent();
+    out.line(");");
+    for (final var field : fields) {
+      if (field.type() instanceof AnchorPrimitive(final AnchorType type) && valueLayout(type) != null) {
+        out.append("private static final VarHandle ").append(handleName(field))
+            .append(" = LAYOUT.varHandle(MemoryLayout.PathElement.groupElement(\"").append(field.name()).line("\"));");
+      }
+    }
+    out.newLine();
+  }
 
-    if (byteLength > 0) {
-      builder.append(String.format("""
-                  @Override
-                  public int l() {
-                  %sreturn BYTES;
-                  }""",
-              tab
-          ).indent(tabLength)
-      );
+  // Reads a value which has no VarHandle, a key, a wide integer, a nested struct or an array element.
+  private static String segmentRead(final GenSrcContext genSrcContext,
+                                    final AnchorTypeContext type,
+                                    final String offset) {
+    return switch (type) {
+      case AnchorPrimitive(final AnchorType primitive) -> switch (primitive) {
+        case bool -> String.format("segment.get(JAVA_BYTE, %s) == 1", offset);
+        case publicKey -> {
+          genSrcContext.addStaticImport(AnchorUtil.class, "readPublicKey");
+          yield String.format("readPublicKey(segment, %s)", offset);
+        }
+        default -> {
+          genSrcContext.addStaticImport(AnchorUtil.class, "readWideInteger");
+          yield String.format("readWideInteger(segment, %s, %d)", offset, primitive.dataLength());
+        }
+      };
+      default -> String.format("%s.read(segment, %s)", type.typeName(), offset);
+    };
+  }
+
+  // Writes a value which has no VarHandle.
+  private static String segmentWrite(final GenSrcContext genSrcContext,
+                                     final AnchorTypeContext type,
+                                     final String value,
+                                     final String offset) {
+    return switch (type) {
+      case AnchorPrimitive(final AnchorType primitive) -> switch (primitive) {
+        case bool -> String.format("segment.set(JAVA_BYTE, %s, (byte) (%s ? 1 : 0));\n", offset, value);
+        case publicKey -> String.format(
+            "MemorySegment.copy(%s.toByteArray(), 0, segment, JAVA_BYTE, %s, %d);\n",
+            value, offset, primitive.dataLength()
+        );
+        default -> {
+          genSrcContext.addStaticImport(AnchorUtil.class, "writeWideInteger");
+          yield String.format("writeWideInteger(segment, %s, %d, %s);\n", offset, primitive.dataLength(), value);
+        }
+      };
+      default -> String.format("%s.write(segment, %s);\n", value, offset);
+    };
+  }
+
+  private static void appendSegmentCodec(final SourceWriter out,
+                                         final GenSrcContext genSrcContext,
+                                         final String name,
+                                         final List<AnchorNamedType> fields,
+                                         final TypeLayouts.Layout layout,
+                                         final int[] paddingLengths,
+                                         final boolean isAccount,
+                                         final boolean hasDiscriminator) {
+    genSrcContext.addImport("java.lang.foreign.MemorySegment");
+    final var returnNewLine = String.format("return new %s(", name);
+    final var readBuilder = new StringBuilder(512);
+    final var newInstanceBuilder = new StringBuilder(1_024);
+    if (isAccount) {
+      newInstanceBuilder.append("_address,\n");
+      out.append("public static ").append(name).line(" read(final MemorySegment segment, final long offset) {");
+      out.indent().line("return read(null, segment, offset);").outdent();
+      out.line("}").newLine();
+      out.append("public static ").append(name).line(" read(final PublicKey _address, final MemorySegment segment, final long offset) {");
     } else {
-      builder.append("""
-          @Override
-          public int l() {
-          """.indent(tabLength));
-      builder.append(tab).append(tab);
-      if (ordinal < 0) {
-        if (hasDiscriminator) {
-          builder.append(String.format("return %d + ", AnchorUtil.DISCRIMINATOR_LENGTH));
-        } else {
-          builder.append("return ");
+      out.append("public static ").append(name).line(" read(final MemorySegment segment, final long offset) {");
+    }
+    if (hasDiscriminator) {
+      genSrcContext.addStaticImport(AnchorUtil.class, "parseDiscriminator");
+      newInstanceBuilder.append("parseDiscriminator(segment, offset),\n");
+    }
+    final var writeBuilder = new StringBuilder(1_024);
+    if (hasDiscriminator) {
+      writeBuilder.append("MemorySegment.copy(discriminator.data(), 0, segment, JAVA_BYTE, offset, discriminator.length());\n");
+    }
+    final var padding = genSrcContext.options().padding();
+    for (int f = 0, numFields = fields.size(); f < numFields; ++f) {
+      final var field = fields.get(f);
+      final var fieldName = field.name();
+      final var fieldOffset = "offset + " + layout.fieldOffset(f);
+      final var handle = handleName(field);
+      if (paddingLengths != null && paddingLengths[f] >= 0) {
+        if (padding == GenSrcOptions.Padding.ZERO) {
+          writeBuilder.append(String.format("segment.asSlice(%s, %d).fill((byte) 0);\n", fieldOffset, paddingLengths[f]));
         }
-      } else {
-        builder.append("return 1 + ");
+        continue;
+      }
+      switch (field.type()) {
+        case AnchorPrimitive(final AnchorType type) -> {
+          switch (type) {
+            case bool -> {
+              newInstanceBuilder.append(String.format("(byte) %s.get(segment, offset) == 1", handle));
+              writeBuilder.append(String.format("%s.set(segment, offset, (byte) (%s ? 1 : 0));\n", handle, fieldName));
+            }
+            case i8 -> {
+              newInstanceBuilder.append(String.format("(byte) %s.get(segment, offset)", handle));
+              writeBuilder.append(String.format("%s.set(segment, offset, (byte) %s);\n", handle, fieldName));
+            }
+            case u8 -> {
+              newInstanceBuilder.append(String.format("((byte) %s.get(segment, offset)) & 0xFF", handle));
+              writeBuilder.append(String.format("%s.set(segment, offset, (byte) %s);\n", handle, fieldName));
+            }
+            case i16, u16 -> {
+              newInstanceBuilder.append(String.format("(short) %s.get(segment, offset)", handle));
+              writeBuilder.append(String.format("%s.set(segment, offset, (short) %s);\n", handle, fieldName));
+            }
+            case i32, u32, i64, u64, usize, f32, f64 -> {
+              newInstanceBuilder.append(String.format("(%s) %s.get(segment, offset)", type.javaType().getSimpleName(), handle));
+              writeBuilder.append(String.format("%s.set(segment, offset, %s);\n", handle, fieldName));
+            }
+            default -> {
+              newInstanceBuilder.append(segmentRead(genSrcContext, field.type(), fieldOffset));
+              writeBuilder.append(segmentWrite(genSrcContext, field.type(), fieldName, fieldOffset));
+            }
+          }
+        }
+        case AnchorDefined defined -> {
+          newInstanceBuilder.append(segmentRead(genSrcContext, defined, fieldOffset));
+          writeBuilder.append(segmentWrite(genSrcContext, defined, fieldName, fieldOffset));
+        }
+        case AnchorArray(final AnchorTypeContext genericType, final int depth, final int numElements) -> {
+          final var elementType = genericType.realTypeName();
+          if (genericType instanceof AnchorPrimitive(final AnchorType type)
+              && type != AnchorType.bool
+              && valueLayout(type) != null) {
+            // Bulk copy of the little endian elements.
+            final var elementLayout = segmentLayout(genSrcContext, genericType);
+            readBuilder.append(String.format("""
+                    final var _%s = new %s[%d];
+                    MemorySegment.copy(segment, %s, %s, _%s, 0, %d);
+                    """,
+                fieldName, elementType, numElements, elementLayout, fieldOffset, fieldName, numElements
+            ));
+            writeBuilder.append(String.format(
+                "MemorySegment.copy(%s, 0, segment, %s, %s, %d);\n",
+                fieldName, elementLayout, fieldOffset, numElements
+            ));
+          } else {
+            AnchorArray.addImports(genSrcContext, genericType);
+            final int elementLength = layout.fieldLength(f) / numElements;
+            final var elementOffset = String.format("%s + (i * %d)", fieldOffset, elementLength);
+            readBuilder.append(String.format("""
+                    final var _%s = new %s[%d];
+                    for (int i = 0; i < %d; ++i) {
+                    %s_%s[i] = %s;
+                    }
+                    """,
+                fieldName, elementType, numElements,
+                numElements,
+                genSrcContext.tab(), fieldName, segmentRead(genSrcContext, genericType, elementOffset)
+            ));
+            writeBuilder.append(String.format("for (int i = 0; i < %d; ++i) {\n", numElements));
+            writeBuilder.append(segmentWrite(genSrcContext, genericType, fieldName + "[i]", elementOffset)
+                .indent(genSrcContext.tabLength()));
+            writeBuilder.append("}\n");
+          }
+          newInstanceBuilder.append('_').append(fieldName);
+        }
+        default -> throw new IllegalStateException("Unexpected segment field type " + field.type());
       }
-      builder.append(replaceNewLinesIfLessThan(lengthBuilder, fields.size(), 5)).append(";\n");
-      builder.append(tab).append("}\n");
+      newInstanceBuilder.append(",\n");
     }
+    newInstanceBuilder.setLength(newInstanceBuilder.length() - 2);
+    out.indent();
+    out.append(readBuilder);
+    out.append(returnNewLine).appendLines(newInstanceBuilder, returnNewLine.length(), false).line(");");
+    out.outdent();
+    out.line("}").newLine();
 
-    if (ordinal >= 0) {
-      builder.append(String.format("""
-          
-          @Override
-          public int ordinal() {
-            return %d;
+    out.line("public int write(final MemorySegment segment, final long offset) {");
+    out.indent();
+    out.append(writeBuilder);
+    out.line("return BYTES;");
+    out.outdent();
+    out.line("}").newLine();
+  }
+
+  // Whether a view is generated for the defined type, so that the views of the types nesting it can return it
+  // instead of reading a record. Accounts always have a view but nest without their discriminator.
+  static boolean hasNestedView(final GenSrcContext genSrcContext, final String typeName) {
+    return !genSrcContext.isAccount(typeName)
+        && genSrcContext.definedTypes().get(typeName).type() instanceof AnchorStruct(final List<AnchorNamedType> fields)
+        && !fields.isEmpty()
+        && genSrcContext.layout(typeName).fixedLength();
+  }
+
+  // Flyweight over account data, or over a fixed length struct nested in it, which reads the fields at fixed offsets
+  // on access, and which can be re-pointed at other data without allocating.
+  //
+  // Nested structs, and the elements of fixed length arrays of them, are returned as views too. Each accessor
+  // re-points and returns the same nested view instance, so a nested view is only valid until the accessor is called
+  // again.
+  String generateViewSource(final GenSrcContext genSrcContext,
+                            final String packageName,
+                            final AnchorNamedType context) {
+    final var name = context.name();
+    final var viewName = name + "View";
+    final boolean isAccount = genSrcContext.isAccount(name);
+    final var layout = genSrcContext.layout(name);
+    final var out = new SourceWriter(genSrcContext.tab(), 4_096);
+    out.indent();
+    final var constants = new StringBuilder(256);
+    final var nestedViews = new StringBuilder(256);
+    final var accessors = new SourceWriter(genSrcContext.tab(), 4_096).indent();
+
+    for (int f = 0, numFields = fields.size(); f < numFields; ++f) {
+      if (layout.fieldOffset(f) < 0 || layout.fieldLength(f) < 0) {
+        break;
+      }
+      final var field = fields.get(f);
+      final var fieldName = field.name();
+      if (fieldName.equals("read") || fieldName.equals("wrap")) {
+        continue;
+      }
+      final var constantPrefix = AnchorUtil.snakeCase(fieldName).toUpperCase(Locale.ENGLISH);
+      final var offsetReference = isAccount
+          ? "offset + " + name + '.' + constantPrefix + "_OFFSET"
+          : layout.fieldOffset(f) == 0 ? "offset" : "offset + " + layout.fieldOffset(f);
+      final var nestedView = '_' + fieldName + "View";
+      switch (field.type()) {
+        case AnchorPrimitive primitive when primitive.type() != string && primitive.type() != AnchorType.bytes -> {
+          final var typeName = primitive.typeName();
+          addViewImports(genSrcContext, primitive);
+          appendViewAccessor(accessors, field, typeName, null, primitive.generateRead(genSrcContext, offsetReference));
+          if (isAccount && primitive.hasInPlaceEquals()) {
+            accessors.newLine();
+            accessors.append("public boolean ").append(fieldName).append("Equals(final ").append(typeName)
+                .line(" value) {");
+            accessors.indent().append("return ").append(name).append('.').append(fieldName)
+                .line("Equals(_data, offset, value);").outdent();
+            accessors.line("}");
           }
-          """, ordinal).indent(tabLength));
+        }
+        case AnchorDefined(final String typeName) when hasNestedView(genSrcContext, typeName) -> {
+          appendNestedView(nestedViews, typeName, nestedView);
+          appendViewAccessor(
+              accessors, field, typeName + "View", null,
+              String.format("%s.wrap(_data, %s)", nestedView, offsetReference)
+          );
+        }
+        case AnchorDefined(final String typeName) -> appendViewAccessor(
+            accessors, field, typeName, null,
+            String.format("%s.read(_data, %s)", typeName, offsetReference)
+        );
+        case AnchorArray(final AnchorTypeContext genericType, final int depth, final int numElements)
+            when depth == 1 && numElements > 0 -> {
+          final int elementLength = layout.fieldLength(f) / numElements;
+          final var elementOffset = elementLength == 1
+              ? offsetReference + " + i"
+              : String.format("%s + (i * %d)", offsetReference, elementLength);
+          final String typeName;
+          final String read;
+          switch (genericType) {
+            case AnchorPrimitive primitive when primitive.type() != string && primitive.type() != AnchorType.bytes -> {
+              addViewImports(genSrcContext, primitive);
+              typeName = primitive.typeName();
+              read = primitive.generateRead(genSrcContext, elementOffset);
+            }
+            case AnchorDefined(final String elementType) when hasNestedView(genSrcContext, elementType) -> {
+              appendNestedView(nestedViews, elementType, nestedView);
+              typeName = elementType + "View";
+              read = String.format("%s.wrap(_data, %s)", nestedView, elementOffset);
+            }
+            case AnchorDefined(final String elementType) -> {
+              typeName = elementType;
+              read = String.format("%s.read(_data, %s)", elementType, elementOffset);
+            }
+            default -> {
+              continue;
+            }
+          }
+          genSrcContext.addImport("java.util.Objects");
+          constants.append(String.format("public static final int %s_LEN = %d;\n", constantPrefix, numElements));
+          appendViewAccessor(accessors, field, typeName, constantPrefix + "_LEN", read);
+        }
+        default -> {
+        }
+      }
+    }
+
+    out.append(constants);
+    if (!constants.isEmpty()) {
+      out.newLine();
+    }
+    out.line("private byte[] _data;");
+    out.line("private int offset;");
+    out.append(nestedViews).newLine();
+    out.append("public ").append(viewName).line("() {");
+    out.line("}").newLine();
+    out.append("public ").append(viewName).line("(final byte[] _data, final int offset) {");
+    out.indent().line("this._data = _data;").line("this.offset = offset;").outdent();
+    out.line("}").newLine();
+    out.append("public ").append(viewName).line(" wrap(final byte[] _data, final int offset) {");
+    out.indent().line("this._data = _data;").line("this.offset = offset;").line("return this;").outdent();
+    out.line("}").newLine();
+    out.append("public ").append(viewName).line(" wrap(final byte[] _data) {");
+    out.indent().line("return wrap(_data, 0);").outdent();
+    out.line("}").newLine();
+    out.append("public ").append(name).line(" read() {");
+    out.indent().append("return ").append(name).line(".read(_data, offset);").outdent();
+    out.line("}");
+    out.outdent();
+    if (!accessors.isEmpty()) {
+      out.append(accessors.toString());
+    }
+
+    final var header = new StringBuilder(1_024);
+    header.append("package ").append(packageName).append(";\n\n");
+    if (genSrcContext.appendImports(header)) {
+      header.append('\n');
+    }
+    return header + "public final class " + viewName + " {\n\n" + out.append('}');
+  }
+
+  private static void addViewImports(final GenSrcContext genSrcContext, final AnchorPrimitive primitive) {
+    if (primitive.type() == AnchorType.publicKey) {
+      genSrcContext.addImport(PublicKey.class);
+    } else if (primitive.type().dataLength() > Long.BYTES) {
+      genSrcContext.addImport(BigInteger.class);
     }
+  }
 
-    return removeBlankLines(builder.append('}').toString());
+  private static void appendNestedView(final StringBuilder nestedViews,
+                                       final String typeName,
+                                       final String nestedView) {
+    nestedViews.append(String.format("private final %sView %s = new %sView();\n", typeName, nestedView, typeName));
+  }
+
+  // Array element accessors take the element index, which is checked against the length constant.
+  private static void appendViewAccessor(final SourceWriter out,
+                                         final AnchorNamedType field,
+                                         final String typeName,
+                                         final String lengthConstant,
+                                         final String read) {
+    out.newLine();
+    out.append(field.docComments());
+    out.append("public ").append(typeName).append(' ').append(field.name())
+        .append(lengthConstant == null ? "(" : "(final int i").line(") {");
+    out.indent();
+    if (lengthConstant != null) {
+      out.append("Objects.checkIndex(i, ").append(lengthConstant).line(");");
+    }
+    out.append("return ").append(read).line(";");
+    out.outdent();
+    out.line("}");
   }
 
   static String generatePublicRecord(final GenSrcContext genSrcContext,
@@ -403,8 +998,12 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
                                      final List<AnchorNamedType> fields,
                                      final boolean isAccount,
                                      final AnchorNamedType account,
-                                     final boolean hasDiscriminator) {
-    return generateRecord(genSrcContext, context, fields, "public", "Borsh", -1, isAccount, account, hasDiscriminator);
+                                     final boolean hasDiscriminator,
+                                     final boolean isEvent) {
+    final var interfaceName = isAccount
+        ? isEvent ? genSrcContext.accountInterface() + ", " + genSrcContext.eventInterface() : genSrcContext.accountInterface()
+        : "Borsh";
+    return generateRecord(genSrcContext, context, fields, "public", interfaceName, -1, isAccount, account, hasDiscriminator);
   }
 
   @Override
@@ -418,10 +1017,13 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
   }
 
   @Override
-  public boolean isFixedLength(final Map<String, AnchorNamedType> definedTypes) {
-    return fields.stream()
-        .map(AnchorNamedType::type)
-        .allMatch(type -> type.isFixedLength(definedTypes));
+  public boolean isFixedLength(final GenSrcContext genSrcContext) {
+    for (final var field : fields) {
+      if (!field.type().isFixedLength(genSrcContext)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
@@ -443,11 +1045,10 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
 
   @Override
   public int fixedSerializedLength(final GenSrcContext genSrcContext, final boolean hasDiscriminator) {
-    final var definedTypes = genSrcContext.definedTypes();
     int serializedLength = hasDiscriminator ? AnchorUtil.DISCRIMINATOR_LENGTH : 0;
     for (final var field : fields) {
-      if (isFixedLength(definedTypes)) {
-        final var type = field.type();
+      final var type = field.type();
+      if (type.isFixedLength(genSrcContext)) {
         serializedLength += type.serializedLength(genSrcContext, genSrcContext.isAccount(type.typeName()));
       } else {
         return serializedLength;
@@ -458,9 +1059,15 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
 
   public String generateSource(final GenSrcContext genSrcContext,
                                final AnchorNamedType context) {
+    return generateSource(genSrcContext, context, "Borsh");
+  }
+
+  public String generateSource(final GenSrcContext genSrcContext,
+                               final AnchorNamedType context,
+                               final String interfaceName) {
     final var builder = new StringBuilder(4_096);
     genSrcContext.addImport(Borsh.class);
-    final var recordSource = generatePublicRecord(genSrcContext, context, fields, false, null, true);
+    final var recordSource = generateRecord(genSrcContext, context, fields, "public", interfaceName, -1, false, null, true);
     return builder.append('\n').append(recordSource).toString();
   }
 
@@ -469,13 +1076,35 @@ public record AnchorStruct(List<AnchorNamedType> fields) implements AnchorDefine
                                final AnchorNamedType context,
                                final boolean isAccount,
                                final AnchorNamedType account) {
+    return generateSource(genSrcContext, packageName, context, isAccount, account, false);
+  }
+
+  public String generateSource(final GenSrcContext genSrcContext,
+                               final String packageName,
+                               final AnchorNamedType context,
+                               final boolean isAccount,
+                               final AnchorNamedType account,
+                               final boolean isEvent) {
+    final var recordSource = generatePublicRecord(genSrcContext, context, fields, isAccount, account, isAccount, isEvent);
+    return generateSource(genSrcContext, packageName, recordSource);
+  }
+
+  public String generateEventSource(final GenSrcContext genSrcContext,
+                                    final String packageName,
+                                    final AnchorNamedType context) {
+    final var interfaceName = genSrcContext.eventInterface();
+    final var recordSource = generateRecord(genSrcContext, context, fields, "public", interfaceName, -1, false, null, false);
+    return generateSource(genSrcContext, packageName, recordSource);
+  }
+
+  static String generateSource(final GenSrcContext genSrcContext,
+                               final String packageName,
+                               final String recordSource) {
     final var builder = new StringBuilder(4_096);
     builder.append("package ").append(packageName).append(";\n\n");
 
     genSrcContext.addImport(Borsh.class);
 
-    final var recordSource = generatePublicRecord(genSrcContext, context, fields, isAccount, account, isAccount);
-
     genSrcContext.appendImports(builder);
 
     return builder.append('\n').append(recordSource).toString();
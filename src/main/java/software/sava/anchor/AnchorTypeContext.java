@@ -1,13 +1,13 @@
 package software.sava.anchor;
 
 import java.util.List;
-import java.util.Map;
 
 public sealed interface AnchorTypeContext permits AnchorDefinedTypeContext, AnchorReferenceTypeContext {
 
   AnchorType type();
 
-  default boolean isFixedLength(final Map<String, AnchorNamedType> definedTypes) {
+  // Defined types are resolved through the cached TypeLayouts of the context.
+  default boolean isFixedLength(final GenSrcContext genSrcContext) {
     return false;
   }
 
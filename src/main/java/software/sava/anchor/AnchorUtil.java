@@ -2,18 +2,34 @@ package software.sava.anchor;
 
 import software.sava.core.accounts.PublicKey;
 import software.sava.core.programs.Discriminator;
+import software.sava.core.rpc.DataSizeFilter;
+import software.sava.core.rpc.Filter;
+import software.sava.core.rpc.MemCmpFilter;
 import systems.comodal.jsoniter.JsonIterator;
 
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.List;
 
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.util.Arrays.copyOfRange;
+import static software.sava.core.encoding.ByteUtil.getInt64LE;
 import static software.sava.core.crypto.Hash.sha256;
 
 public final class AnchorUtil {
 
   public static final int DISCRIMINATOR_LENGTH = 8;
+  // Prefix of the self CPI instruction data written by emit_cpi!, followed by the event discriminator.
+  public static final long EVENT_IX_TAG_LE = 0x1D9ACB512EA545E4L;
   private static final String GLOBAL_NAMESPACE = "global:";
+  private static final String EVENT_NAMESPACE = "event:";
+  private static final String ACCOUNT_NAMESPACE = "account:";
   private static final String IDL_SEED = "anchor:idl";
+  private static final ValueLayout.OfLong LONG_LE = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(LITTLE_ENDIAN);
+  private static final BigInteger UNSIGNED_LONG_MASK = BigInteger.ONE.shiftLeft(Long.SIZE).subtract(BigInteger.ONE);
 
   public static PublicKey createIdlAddress(final PublicKey program) {
     final var basePDA = PublicKey.findProgramAddress(List.of(), program);
@@ -43,6 +59,22 @@ public final class AnchorUtil {
     return Discriminator.createDiscriminator(discriminator);
   }
 
+  // Compares a discriminator of any length with the bytes at the offset, used for custom discriminators which are not
+  // eight bytes.
+  public static boolean discriminatorEquals(final byte[] data,
+                                            final int offset,
+                                            final int length,
+                                            final Discriminator discriminator) {
+    final byte[] bytes = discriminator.data();
+    return length >= bytes.length && Arrays.equals(data, offset, offset + bytes.length, bytes, 0, bytes.length);
+  }
+
+  public static Discriminator parseDiscriminator(final MemorySegment segment, final long offset) {
+    final byte[] discriminator = new byte[DISCRIMINATOR_LENGTH];
+    MemorySegment.copy(segment, JAVA_BYTE, offset, discriminator, 0, DISCRIMINATOR_LENGTH);
+    return Discriminator.createDiscriminator(discriminator);
+  }
+
   public static Discriminator parseDiscriminator(final byte[] data) {
     return parseDiscriminator(data, 0);
   }
@@ -69,6 +101,116 @@ public final class AnchorUtil {
     ));
   }
 
+  // Events are hashed by their type name as is, not snake cased.
+  public static Discriminator toEventDiscriminator(final String name) {
+    return Discriminator.createDiscriminator(copyOfRange(
+        sha256((EVENT_NAMESPACE + name).getBytes()),
+        0, DISCRIMINATOR_LENGTH
+    ));
+  }
+
+  // Accounts are hashed by their type name as is, not snake cased.
+  public static Discriminator toAccountDiscriminator(final String name) {
+    return Discriminator.createDiscriminator(copyOfRange(
+        sha256((ACCOUNT_NAMESPACE + name).getBytes()),
+        0, DISCRIMINATOR_LENGTH
+    ));
+  }
+
+  // Compares the key with the 32 bytes at the offset as four longs, without reading a PublicKey.
+  public static boolean publicKeyEquals(final byte[] data, final int offset, final PublicKey key) {
+    final byte[] keyBytes = key.toByteArray();
+    return getInt64LE(data, offset) == getInt64LE(keyBytes, 0)
+        && getInt64LE(data, offset + 8) == getInt64LE(keyBytes, 8)
+        && getInt64LE(data, offset + 16) == getInt64LE(keyBytes, 16)
+        && getInt64LE(data, offset + 24) == getInt64LE(keyBytes, 24);
+  }
+
+  // Compares the little-endian two's complement integer of byteLength bytes at the offset with the value one long
+  // word at a time, without decoding the data into a BigInteger.
+  public static boolean wideIntegerEquals(final byte[] data,
+                                          final int offset,
+                                          final int byteLength,
+                                          final boolean signed,
+                                          final BigInteger value) {
+    final int numBits = byteLength << 3;
+    if (signed ? value.bitLength() >= numBits : value.signum() < 0 || value.bitLength() > numBits) {
+      return false;
+    }
+    var remaining = value;
+    for (int i = 0; i < byteLength; i += Long.BYTES) {
+      if (getInt64LE(data, offset + i) != remaining.longValue()) {
+        return false;
+      }
+      remaining = remaining.shiftRight(Long.SIZE);
+    }
+    return true;
+  }
+
+  public static PublicKey readPublicKey(final MemorySegment segment, final long offset) {
+    final byte[] key = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    MemorySegment.copy(segment, JAVA_BYTE, offset, key, 0, PublicKey.PUBLIC_KEY_LENGTH);
+    return PublicKey.createPubKey(key);
+  }
+
+  // Reads the little-endian two's complement integer of byteLength bytes from the segment one long word at a time,
+  // starting with the most significant word.
+  public static BigInteger readWideInteger(final MemorySegment segment, final long offset, final int byteLength) {
+    int i = byteLength - Long.BYTES;
+    var value = BigInteger.valueOf(segment.get(LONG_LE, offset + i));
+    for (i -= Long.BYTES; i >= 0; i -= Long.BYTES) {
+      final long word = segment.get(LONG_LE, offset + i);
+      value = value.shiftLeft(Long.SIZE).or(BigInteger.valueOf(word).and(UNSIGNED_LONG_MASK));
+    }
+    return value;
+  }
+
+  // Writes the value as a little-endian two's complement integer of byteLength bytes one long word at a time.
+  public static void writeWideInteger(final MemorySegment segment,
+                                      final long offset,
+                                      final int byteLength,
+                                      final BigInteger value) {
+    var remaining = value;
+    for (int i = 0; i < byteLength; i += Long.BYTES) {
+      segment.set(LONG_LE, offset + i, remaining.longValue());
+      remaining = remaining.shiftRight(Long.SIZE);
+    }
+  }
+
+  /**
+   * Evaluates RPC account filters against account data in process, as an RPC node would.
+   *
+   * @throws IllegalArgumentException if a filter is neither a {@link MemCmpFilter} nor a {@link DataSizeFilter}, the
+   *                                  only account filters which can be evaluated against the data alone.
+   */
+  public static boolean matches(final List<Filter> filters, final byte[] data) {
+    for (final var filter : filters) {
+      if (!matches(filter, data)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Evaluates an RPC account filter against account data in process, as an RPC node would.
+   *
+   * @throws IllegalArgumentException if the filter is neither a {@link MemCmpFilter} nor a {@link DataSizeFilter}, the
+   *                                  only account filters which can be evaluated against the data alone.
+   */
+  public static boolean matches(final Filter filter, final byte[] data) {
+    if (filter instanceof MemCmpFilter memCmpFilter) {
+      final int offset = memCmpFilter.offset();
+      final byte[] bytes = memCmpFilter.bytes();
+      final int to = offset + bytes.length;
+      return offset >= 0 && to <= data.length && Arrays.equals(data, offset, to, bytes, 0, bytes.length);
+    } else if (filter instanceof DataSizeFilter dataSizeFilter) {
+      return data.length == dataSizeFilter.dataSize();
+    } else {
+      throw new IllegalArgumentException("Cannot evaluate filter " + filter + " against account data.");
+    }
+  }
+
   public static String snakeCase(final String notSnakeCased) {
     return snakeCase(notSnakeCased, false);
   }
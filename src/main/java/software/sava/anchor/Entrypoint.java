@@ -14,117 +14,198 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.LongBinaryOperator;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.INFO;
 import static java.lang.System.Logger.Level.WARNING;
-import static java.nio.file.StandardOpenOption.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNullElse;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static systems.comodal.jsoniter.JsonIterator.fieldEquals;
 
-public final class Entrypoint extends Thread {
+public final class Entrypoint {
 
   private static final System.Logger logger = System.getLogger(Entrypoint.class.getName());
 
-  private final Semaphore semaphore;
-  private final ConcurrentLinkedQueue<ProgramConfig> tasks;
-  private final AtomicLong errorCount;
-  private final long baseDelayMillis;
-  private final AtomicLong latestCall;
+  private static final int MAX_ATTEMPTS = 5;
+  private static final long METRICS_INTERVAL_MILLIS = 5_000;
+
+  private final Map<PublicKey, byte[]> prefetchedIDLs;
+  private final IDLCache idlCache;
+  private final boolean offline;
+  private final RpcScheduler rpcScheduler;
+  private final Function<String, RpcScheduler> hostSchedulers;
   private final SolanaRpcClient rpcClient;
   private final Path sourceDirectory;
   private final String basePackageName;
   private final Set<String> exports;
-  private final int tabLength;
-
-  private Entrypoint(final Semaphore semaphore,
-                     final ConcurrentLinkedQueue<ProgramConfig> tasks,
-                     final AtomicLong errorCount,
-                     final long baseDelayMillis,
-                     final AtomicLong latestCall,
+  private final GenSrcOptions options;
+  private final boolean syncOutput;
+  private final GenerationManifest manifest;
+  private final String generatorVersion;
+  private final String generatorOptions;
+
+  private Entrypoint(final Map<PublicKey, byte[]> prefetchedIDLs,
+                     final IDLCache idlCache,
+                     final boolean offline,
+                     final RpcScheduler rpcScheduler,
+                     final Function<String, RpcScheduler> hostSchedulers,
                      final SolanaRpcClient rpcClient,
                      final Path sourceDirectory,
                      final String basePackageName,
                      final Set<String> exports,
-                     final int tabLength) {
-    this.semaphore = semaphore;
-    this.tasks = tasks;
-    this.errorCount = errorCount;
-    this.baseDelayMillis = baseDelayMillis;
-    this.latestCall = latestCall;
+                     final GenSrcOptions options,
+                     final boolean syncOutput,
+                     final GenerationManifest manifest,
+                     final String generatorVersion) {
+    this.prefetchedIDLs = prefetchedIDLs;
+    this.idlCache = idlCache;
+    this.offline = offline;
+    this.rpcScheduler = rpcScheduler;
+    this.hostSchedulers = hostSchedulers;
     this.rpcClient = rpcClient;
     this.sourceDirectory = sourceDirectory;
     this.basePackageName = basePackageName;
     this.exports = exports;
-    this.tabLength = tabLength;
+    this.options = options;
+    this.syncOutput = syncOutput;
+    this.manifest = manifest;
+    this.generatorVersion = generatorVersion;
+    this.generatorOptions = options.toString();
+  }
+
+  // The data is the compressed IDL account data for on-chain IDLs, otherwise the IDL json.
+  private record FetchedIDL(ProgramConfig task, byte[] idlData) {
+
+    @Override
+    public String toString() {
+      return task.toString();
+    }
+  }
+
+  private record ParsedIDL(ProgramConfig task,
+                           String packageName,
+                           String idlHash,
+                           AnchorSourceGenerator generator) {
+
+    @Override
+    public String toString() {
+      return task.toString();
+    }
   }
 
+  private record GeneratedSources(ParsedIDL parsed, Map<String, String> sources) {
+
+    @Override
+    public String toString() {
+      return parsed.toString();
+    }
+  }
 
-  private static final LongBinaryOperator MAX = Long::max;
+  private FetchedIDL fetch(final ProgramConfig task) throws InterruptedException {
+    final byte[] idlData;
+    if (offline) {
+      idlData = task.cachedIDLData(idlCache);
+    } else {
+      // IDLs which were fetched in bulk do not need to be scheduled.
+      final var prefetched = prefetchedIDLData(task);
+      idlData = prefetched == null ? fetchIDLData(task) : prefetched;
+    }
+    return idlData == null ? null : new FetchedIDL(task, idlData);
+  }
 
-  @Override
-  public void run() {
-    ProgramConfig task = null;
-    AnchorIDL idl;
-    for (long delayMillis, latestCall, now, sleep; ; ) {
+  // Failed requests are retried after the scheduler has backed off.
+  private byte[] fetchIDLData(final ProgramConfig task) throws InterruptedException {
+    final var scheduler = scheduler(task);
+    for (int attempt = 1; ; ++attempt) {
       try {
-        task = this.tasks.peek();
-        if (task == null) {
-          return;
-        }
-        this.semaphore.acquire();
-        delayMillis = this.baseDelayMillis * (this.errorCount.get() + 1);
-        latestCall = this.latestCall.get();
-        now = System.currentTimeMillis();
-        sleep = (latestCall + delayMillis) - now;
-        if (sleep > 0) {
-          MILLISECONDS.sleep(sleep);
-          now = System.currentTimeMillis();
-        }
-        task = this.tasks.poll();
-        if (task == null) {
-          return;
-        }
-        idl = task.fetchIDL(rpcClient);
-        if (idl == null) {
-          continue;
-        }
+        return scheduler.execute(() -> task.fetchIDLData(rpcClient, idlCache));
       } catch (final RuntimeException e) {
-        logger.log(ERROR, "Failed to generate IDL for " + task, e);
-        this.errorCount.getAndUpdate(x -> x < 100 ? x + 1 : x);
-        this.tasks.add(task);
-        return;
-      } catch (final InterruptedException e) {
-        throw new RuntimeException(e);
-      } finally {
-        this.semaphore.release();
+        if (attempt < MAX_ATTEMPTS) {
+          logger.log(WARNING, String.format("Failed to fetch IDL for %s, attempt %d of %d.", task, attempt, MAX_ATTEMPTS), e);
+        } else {
+          logger.log(ERROR, "Failed to generate IDL for " + task, e);
+          return null;
+        }
       }
+    }
+  }
 
-      final var packageName = task.formatPackage(basePackageName);
-      final var generator = new AnchorSourceGenerator(
-          sourceDirectory,
-          packageName,
-          tabLength,
-          idl
-      );
-      this.latestCall.getAndAccumulate(now, MAX);
-      generator.run();
-      generator.addExports(exports);
-      this.latestCall.getAndAccumulate(now + ((System.currentTimeMillis() - now) >> 1), MAX);
-      this.errorCount.getAndUpdate(x -> x > 0 ? x - 1 : x);
+  private ParsedIDL parse(final FetchedIDL fetched) {
+    final var task = fetched.task();
+    final var idlData = fetched.idlData();
+    final var packageName = task.formatPackage(basePackageName);
+    final var idlHash = JsonIndexFile.hash(idlData);
+    final var previous = manifest.upToDate(packageName, idlHash, generatorVersion, generatorOptions);
+    if (previous != null) {
+      logger.log(INFO, String.format("Skipping %s, IDL %s is unchanged.", task.name(), idlHash));
+      this.exports.addAll(previous.exports());
+      return null;
     }
+    manifest.remove(packageName);
+
+    // On-chain IDLs are inflated while parsing unless the json is written out.
+    final AnchorIDL idl;
+    if (task.idlURL() != null) {
+      idl = AnchorIDL.parseIDL(idlData, options.idlJson());
+    } else if (options.idlJson()) {
+      idl = AnchorIDL.parseIDL(OnChainIDL.FACTORY.apply(task.idlAddress(), idlData).json());
+    } else {
+      idl = AnchorIDL.parseIDL(OnChainIDL.openJson(idlData));
+    }
+    final var generator = new AnchorSourceGenerator(
+        sourceDirectory,
+        packageName,
+        idl,
+        options,
+        syncOutput
+    );
+    return new ParsedIDL(task, packageName, idlHash, generator);
+  }
+
+  private GeneratedSources generate(final ParsedIDL parsed) {
+    return new GeneratedSources(parsed, parsed.generator().generateSources());
+  }
+
+  private void write(final GeneratedSources generated) {
+    final var parsed = generated.parsed();
+    final var generator = parsed.generator();
+    final var generatedFiles = generator.writeSources(generated.sources());
+    final var programExports = new TreeSet<String>();
+    generator.addExports(programExports);
+    this.exports.addAll(programExports);
+    manifest.put(
+        parsed.task().name(),
+        parsed.packageName(),
+        parsed.idlHash(),
+        generatorVersion,
+        generatorOptions,
+        generatedFiles,
+        List.copyOf(programExports)
+    );
+  }
+
+  // IDL URLs are scheduled per host, everything else shares the RPC scheduler.
+  private RpcScheduler scheduler(final ProgramConfig task) {
+    return task.idlURL() == null ? rpcScheduler : hostSchedulers.apply(task.idlURL().getHost());
+  }
+
+  private byte[] prefetchedIDLData(final ProgramConfig task) {
+    final var accountData = this.prefetchedIDLs.remove(task.idlAddress());
+    return accountData == null ? null : idlCache.accountIDLData(task.idlAddress(), accountData);
   }
 
   private static String mandatoryProperty(final String key) {
@@ -136,6 +217,49 @@ public final class Entrypoint extends Thread {
     return property == null || property.isBlank() ? orElse : property;
   }
 
+  // Incremental generation is disabled if the version of the generator is unknown,
+  // otherwise changes to the generator would not be applied to unchanged IDLs.
+  private static String generatorVersion(final String moduleName) {
+    final var version = System.getProperty(moduleName + ".generatorVersion");
+    if (version != null && !version.isBlank()) {
+      return version;
+    }
+    final var descriptor = Entrypoint.class.getModule().getDescriptor();
+    if (descriptor != null) {
+      final var rawVersion = descriptor.rawVersion();
+      if (rawVersion.isPresent() && !rawVersion.get().isBlank() && !rawVersion.get().equals("0")) {
+        return rawVersion.get();
+      }
+    }
+    logger.log(WARNING, "Generator version is unknown, all programs will be re-generated.");
+    return null;
+  }
+
+  // Fetches the on-chain IDL account data of all programs with as few requests as possible.
+  // IDLs which could not be fetched are left for the workers to fetch individually.
+  private static Map<PublicKey, byte[]> prefetchIDLs(final Collection<ProgramConfig> configs,
+                                                     final SolanaRpcClient rpcClient,
+                                                     final RpcScheduler rpcScheduler) throws InterruptedException {
+    final var idlAddresses = configs.stream()
+        .filter(config -> config.idlURL() == null)
+        .map(ProgramConfig::idlAddress)
+        .distinct()
+        .toList();
+    final var prefetched = new ConcurrentHashMap<PublicKey, byte[]>(idlAddresses.size());
+    final int numAddresses = idlAddresses.size();
+    for (int from = 0, to; from < numAddresses; from = to) {
+      to = Math.min(from + AnchorSourceGenerator.MAX_MULTIPLE_ACCOUNTS, numAddresses);
+      final var batch = idlAddresses.subList(from, to);
+      try {
+        prefetched.putAll(rpcScheduler.execute(() -> AnchorSourceGenerator.fetchIDLAccountData(batch, rpcClient).join()));
+      } catch (final RuntimeException e) {
+        logger.log(WARNING, String.format("Failed to fetch a batch of %d IDL accounts.", batch.size()), e);
+      }
+    }
+    logger.log(INFO, String.format("Fetched %d of %d on-chain IDLs in bulk.", prefetched.size(), numAddresses));
+    return prefetched;
+  }
+
   private record ProgramConfig(String name,
                                String packageName,
                                PublicKey programAddress,
@@ -146,9 +270,24 @@ public final class Entrypoint extends Thread {
       return String.format("%s.%s.anchor", basePackageName, packageName);
     }
 
-    AnchorIDL fetchIDL(final SolanaRpcClient rpcClient) {
+    String cacheKey() {
+      return idlURL == null ? IDLCache.accountKey(idlAddress) : IDLCache.urlKey(idlURL);
+    }
+
+    byte[] cachedIDLData(final IDLCache idlCache) {
+      final var idl = idlCache.cachedIDLData(cacheKey());
+      if (idl == null) {
+        logger.log(WARNING, String.format("No cached IDL for %s [%s], skipping it while offline.", name, cacheKey()));
+      }
+      return idl;
+    }
+
+    byte[] fetchIDLData(final SolanaRpcClient rpcClient, final IDLCache idlCache) {
       if (idlURL == null) {
-        final var idl = AnchorSourceGenerator.fetchIDLForProgram(programAddress, rpcClient).join();
+        final var accountData = AnchorSourceGenerator.fetchIDLAccountData(idlAddress, rpcClient).join();
+        final var idl = accountData == null || accountData.length == 0
+            ? null
+            : idlCache.accountIDLData(idlAddress, accountData);
         if (idl == null) {
           logger.log(WARNING, String.format(
               "Failed to find an IDL for %s using a program address %s at the IDL address %s.",
@@ -159,7 +298,7 @@ public final class Entrypoint extends Thread {
           return idl;
         }
       } else {
-        return AnchorSourceGenerator.fetchIDL(rpcClient.httpClient(), idlURL).join();
+        return idlCache.urlIDLJson(rpcClient.httpClient(), idlURL);
       }
     }
 
@@ -221,17 +360,71 @@ public final class Entrypoint extends Thread {
     final var programsJsonFile = mandatoryProperty(moduleName + ".programs");
     final int numThreads = Integer.parseInt(propertyOrElse(moduleName + ".numThreads", "5"));
     final int baseDelayMillis = Integer.parseInt(propertyOrElse(moduleName + ".baseDelayMillis", "200"));
-
-    final var tasks = new ConcurrentLinkedQueue<ProgramConfig>();
+    final double requestsPerSecond = Double.parseDouble(propertyOrElse(
+        moduleName + ".requestsPerSecond",
+        Double.toString(1_000.0 / Math.max(1, baseDelayMillis))
+    ));
+    final double maxRequestsPerSecond = Double.parseDouble(propertyOrElse(
+        moduleName + ".maxRequestsPerSecond",
+        Double.toString(requestsPerSecond * 4)
+    ));
+    final int maxInFlight = Integer.parseInt(propertyOrElse(moduleName + ".maxInFlight", Integer.toString(numThreads)));
+    final double hostRequestsPerSecond = Double.parseDouble(propertyOrElse(moduleName + ".hostRequestsPerSecond", "2"));
+    final int hostMaxInFlight = Integer.parseInt(propertyOrElse(moduleName + ".hostMaxInFlight", "2"));
+    final int parseConcurrency = Integer.parseInt(propertyOrElse(moduleName + ".parseConcurrency", "2"));
+    final int generateConcurrency = Integer.parseInt(propertyOrElse(
+        moduleName + ".generateConcurrency",
+        Integer.toString(Runtime.getRuntime().availableProcessors())
+    ));
+    final int writeConcurrency = Integer.parseInt(propertyOrElse(moduleName + ".writeConcurrency", "2"));
+    final int queueCapacity = Integer.parseInt(propertyOrElse(moduleName + ".queueCapacity", "8"));
+    final var manifestFile = Path.of(propertyOrElse(
+        moduleName + ".manifest",
+        sourceDirectory.resolve("anchor-src-gen-manifest.json").toString()
+    )).toAbsolutePath();
+    final var generatorVersion = generatorVersion(moduleName);
+    final boolean syncOutput = Boolean.parseBoolean(propertyOrElse(moduleName + ".syncOutput", "true"));
+    final boolean idlJson = Boolean.parseBoolean(propertyOrElse(moduleName + ".idlJson", "true"));
+    final boolean wideIntegersAsLongs = Boolean.parseBoolean(propertyOrElse(moduleName + ".wideIntegersAsLongs", "false"));
+    final boolean packedOptionals = Boolean.parseBoolean(propertyOrElse(moduleName + ".packedOptionals", "false"));
+    final boolean lazyStrings = Boolean.parseBoolean(propertyOrElse(moduleName + ".lazyStrings", "false"));
+    final var internStrings = propertyOrElse(moduleName + ".internStrings", null);
+    final var padding = GenSrcOptions.Padding.valueOf(
+        propertyOrElse(moduleName + ".padding", "keep").toUpperCase(Locale.ENGLISH)
+    );
+    final var paddingFields = propertyOrElse(moduleName + ".paddingFields", null);
+    final var slices = GenSrcOptions.Slices.valueOf(
+        propertyOrElse(moduleName + ".slices", "copy").toUpperCase(Locale.ENGLISH)
+    );
+    final var options = new GenSrcOptions(
+        tabLength,
+        idlJson,
+        wideIntegersAsLongs,
+        packedOptionals,
+        lazyStrings,
+        internStrings == null ? null : Pattern.compile(internStrings),
+        padding,
+        paddingFields == null ? GenSrcOptions.DEFAULT_PADDING_FIELDS : Pattern.compile(paddingFields),
+        slices
+    );
+    final var idlCacheDirectory = Path.of(propertyOrElse(moduleName + ".idlCache", ".anchor-idl-cache")).toAbsolutePath();
+    final boolean offline = Boolean.parseBoolean(propertyOrElse(moduleName + ".offline", "false"));
+
+    final var tasks = new ArrayList<ProgramConfig>();
     try (final var ji = JsonIterator.parse(Files.readAllBytes(Path.of(programsJsonFile)))) {
       ProgramConfig.parseConfigs(tasks, ji);
     }
 
-    try {
-      final var semaphore = new Semaphore(numThreads, false);
+    final var manifest = GenerationManifest.load(manifestFile, sourceDirectory);
+    final var idlCache = IDLCache.load(idlCacheDirectory);
 
-      final var errorCount = new AtomicLong();
-      final var latestCall = new AtomicLong();
+    try {
+      final var rpcScheduler = new RpcScheduler("rpc", requestsPerSecond, maxRequestsPerSecond, maxInFlight);
+      final var hostSchedulers = new ConcurrentHashMap<String, RpcScheduler>();
+      final Function<String, RpcScheduler> hostScheduler = host -> hostSchedulers.computeIfAbsent(
+          host,
+          _ -> new RpcScheduler(host, hostRequestsPerSecond, hostRequestsPerSecond * 4, hostMaxInFlight)
+      );
 
       try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
         try (final var httpClient = HttpClient.newBuilder().executor(executor).build()) {
@@ -240,17 +433,29 @@ public final class Entrypoint extends Thread {
               httpClient
           );
 
+          final Map<PublicKey, byte[]> prefetchedIDLs = offline
+              ? new ConcurrentHashMap<>()
+              : prefetchIDLs(tasks, rpcClient, rpcScheduler);
+
           final var exports = new ConcurrentSkipListSet<String>();
-          final var threads = IntStream.range(0, numThreads)
-              .mapToObj(_ -> new Entrypoint(
-                  semaphore, tasks, errorCount, baseDelayMillis, latestCall,
-                  rpcClient,
-                  sourceDirectory, basePackageName,
-                  exports,
-                  tabLength
-              ))
-              .peek(Thread::start)
-              .toList();
+          final var entrypoint = new Entrypoint(
+              prefetchedIDLs, idlCache, offline, rpcScheduler, hostScheduler,
+              rpcClient,
+              sourceDirectory, basePackageName,
+              exports,
+              options,
+              syncOutput,
+              manifest,
+              generatorVersion
+          );
+
+          // Fetching, parsing, generating and writing each run with their own concurrency so that
+          // neither RPC capacity nor CPU sits idle waiting on the other.
+          final var pipeline = new GenerationPipeline(executor, queueCapacity);
+          final var fetched = pipeline.stage("fetch", numThreads, pipeline.source(tasks), entrypoint::fetch);
+          final var parsed = pipeline.stage("parse", parseConcurrency, fetched, entrypoint::parse);
+          final var generated = pipeline.stage("generate", generateConcurrency, parsed, entrypoint::generate);
+          pipeline.sink("write", writeConcurrency, generated, entrypoint::write);
 
           final Path moduleFilePath;
           final StringBuilder moduleFileBuilder;
@@ -278,14 +483,18 @@ public final class Entrypoint extends Thread {
             moduleFileBuilder.append(String.format("module %s {%n", outputModuleName));
           }
 
-          for (final var thread : threads) {
-            thread.join();
+          try {
+            pipeline.await(METRICS_INTERVAL_MILLIS);
+          } finally {
+            // Keep the progress of the programs which did complete.
+            manifest.write();
+            idlCache.write();
           }
 
           if (moduleFileBuilder != null) {
             moduleFileBuilder.append(exports.stream().sorted(String::compareToIgnoreCase).collect(Collectors.joining("\n")).indent(tabLength));
             moduleFileBuilder.append('}').append('\n');
-            Files.writeString(moduleFilePath, moduleFileBuilder.toString(), CREATE, TRUNCATE_EXISTING, WRITE);
+            SourceFileWriter.writeIfChanged(moduleFilePath, moduleFileBuilder.toString().getBytes(UTF_8));
           }
         }
       }
@@ -5,6 +5,7 @@ import software.sava.core.accounts.PublicKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 public record GenSrcContext(Set<String> accounts,
                             Map<String, AnchorNamedType> definedTypes,
@@ -14,7 +15,9 @@ public record GenSrcContext(Set<String> accounts,
                             String srcPackage,
                             String typePackage,
                             String programName,
-                            Map<PublicKey, AccountReferenceCall> accountMethods) {
+                            Map<PublicKey, AccountReferenceCall> accountMethods,
+                            TypeLayouts layouts,
+                            GenSrcOptions options) {
 
   private static String getPackageGroup(final String importLine) {
     int i = importLine.indexOf('.');
@@ -30,6 +33,38 @@ public record GenSrcContext(Set<String> accounts,
     return accounts.contains(typeName);
   }
 
+  // Sealed interface implemented by every account type of the program.
+  public String accountInterface() {
+    final var accountInterface = programName + "Account";
+    return definedTypes.containsKey(accountInterface) ? programName + "ProgramAccount" : accountInterface;
+  }
+
+  // Sealed interface implemented by the instruction data records of the program.
+  public String instructionInterface() {
+    final var instructionInterface = programName + "Instruction";
+    return definedTypes.containsKey(instructionInterface) ? programName + "ProgramInstruction" : instructionInterface;
+  }
+
+  // Sealed interface implemented by every event type of the program.
+  public String eventInterface() {
+    final var eventInterface = programName + "Event";
+    return definedTypes.containsKey(eventInterface) ? programName + "ProgramEvent" : eventInterface;
+  }
+
+  // Whether the string record field only keeps its UTF-8 bytes in a LazyString.
+  public boolean isLazyString(final String fieldName) {
+    return options.lazyStrings() || isInternedString(fieldName);
+  }
+
+  public boolean isInternedString(final String fieldName) {
+    final var internStrings = options.internStrings();
+    return internStrings != null && internStrings.matcher(fieldName).matches();
+  }
+
+  public TypeLayouts.Layout layout(final String typeName) {
+    return layouts.layout(this, typeName);
+  }
+
   public int tabLength() {
     return tab.length();
   }
@@ -38,6 +73,22 @@ public record GenSrcContext(Set<String> accounts,
     builder.append("package ").append(srcPackage).append(";\n\n");
   }
 
+  public GenSrcContext withNewImports() {
+    return new GenSrcContext(
+        accounts,
+        definedTypes,
+        new TreeSet<>(),
+        new TreeSet<>(),
+        tab,
+        srcPackage,
+        typePackage,
+        programName,
+        accountMethods,
+        layouts,
+        options
+    );
+  }
+
   public void clearImports() {
     imports.clear();
     staticImports.clear();
@@ -0,0 +1,110 @@
+package software.sava.anchor;
+
+import java.util.regex.Pattern;
+
+// Options which change the generated sources.
+//
+// wideIntegersAsLongs: Represent u128, i128, u256 and i256 as generated value records of longs instead of BigInteger.
+// packedOptionals: Store optional primitive record fields as the raw value plus a bit in a per record bitset instead of
+// boxing them in Optional types.
+// lazyStrings: Keep only the UTF-8 bytes of string record fields and decode them on first access.
+// internStrings: String record fields with a matching name are lazy and shared through an interning pool, null for none.
+// padding: Whether [u8; N], [u64; N] and other primitive array record fields with a name matching paddingFields are
+// kept, or skipped when read and either zeroed or left untouched when written.
+// slices: Whether bytes, Vec<u8>, [u8; N] and [u64; N] record fields are copied, or are read-only ByteBuffer, LongBuffer
+// or MemorySegment views over the data they were read from.
+public record GenSrcOptions(int tabLength,
+                            boolean idlJson,
+                            boolean wideIntegersAsLongs,
+                            boolean packedOptionals,
+                            boolean lazyStrings,
+                            Pattern internStrings,
+                            Padding padding,
+                            Pattern paddingFields,
+                            Slices slices) {
+
+  public enum Padding {
+    KEEP,
+    ZERO,
+    PRESERVE
+  }
+
+  public enum Slices {
+    COPY,
+    BUFFER,
+    SEGMENT
+  }
+
+  public static final Pattern DEFAULT_PADDING_FIELDS = Pattern.compile("(padding|reserved|pad)\\d*");
+
+  public static final GenSrcOptions DEFAULT = new GenSrcOptions(
+      2, true, false, false, false, null, Padding.KEEP, DEFAULT_PADDING_FIELDS, Slices.COPY
+  );
+
+  public GenSrcOptions withTabLength(final int tabLength) {
+    return new GenSrcOptions(
+        tabLength, idlJson, wideIntegersAsLongs, packedOptionals,
+        lazyStrings, internStrings, padding, paddingFields, slices
+    );
+  }
+
+  public GenSrcOptions withIdlJson(final boolean idlJson) {
+    return new GenSrcOptions(
+        tabLength, idlJson, wideIntegersAsLongs, packedOptionals,
+        lazyStrings, internStrings, padding, paddingFields, slices
+    );
+  }
+
+  public GenSrcOptions withWideIntegersAsLongs(final boolean wideIntegersAsLongs) {
+    return new GenSrcOptions(
+        tabLength, idlJson, wideIntegersAsLongs, packedOptionals,
+        lazyStrings, internStrings, padding, paddingFields, slices
+    );
+  }
+
+  public GenSrcOptions withPackedOptionals(final boolean packedOptionals) {
+    return new GenSrcOptions(
+        tabLength, idlJson, wideIntegersAsLongs, packedOptionals,
+        lazyStrings, internStrings, padding, paddingFields, slices
+    );
+  }
+
+  public GenSrcOptions withLazyStrings(final boolean lazyStrings) {
+    return new GenSrcOptions(
+        tabLength, idlJson, wideIntegersAsLongs, packedOptionals,
+        lazyStrings, internStrings, padding, paddingFields, slices
+    );
+  }
+
+  public GenSrcOptions withInternStrings(final Pattern internStrings) {
+    return new GenSrcOptions(
+        tabLength, idlJson, wideIntegersAsLongs, packedOptionals,
+        lazyStrings, internStrings, padding, paddingFields, slices
+    );
+  }
+
+  public GenSrcOptions withPadding(final Padding padding) {
+    return new GenSrcOptions(
+        tabLength, idlJson, wideIntegersAsLongs, packedOptionals,
+        lazyStrings, internStrings, padding, paddingFields, slices
+    );
+  }
+
+  public GenSrcOptions withPaddingFields(final Pattern paddingFields) {
+    return new GenSrcOptions(
+        tabLength, idlJson, wideIntegersAsLongs, packedOptionals,
+        lazyStrings, internStrings, padding, paddingFields, slices
+    );
+  }
+
+  public GenSrcOptions withSlices(final Slices slices) {
+    return new GenSrcOptions(
+        tabLength, idlJson, wideIntegersAsLongs, packedOptionals,
+        lazyStrings, internStrings, padding, paddingFields, slices
+    );
+  }
+
+  public String tab() {
+    return " ".repeat(tabLength);
+  }
+}
@@ -0,0 +1,172 @@
+package software.sava.anchor;
+
+import systems.comodal.jsoniter.ContextFieldBufferPredicate;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static software.sava.anchor.JsonIndexFile.appendArray;
+import static software.sava.anchor.JsonIndexFile.parseStrings;
+import static software.sava.anchor.JsonIndexFile.quote;
+import static systems.comodal.jsoniter.JsonIterator.fieldEquals;
+
+// Tracks what was generated for each program package so that programs with an unchanged IDL,
+// generator version and generator options can be skipped before the IDL is parsed.
+final class GenerationManifest {
+
+  record Entry(String name,
+               String packageName,
+               String idlHash,
+               String generatorVersion,
+               String options,
+               List<String> files,
+               List<String> exports) {
+
+    boolean matches(final String idlHash, final String generatorVersion, final String options) {
+      return this.idlHash.equals(idlHash)
+          && this.generatorVersion.equals(generatorVersion)
+          && this.options.equals(options);
+    }
+
+    private void toJson(final StringBuilder out) {
+      out.append("{\"name\":").append(quote(name));
+      out.append(",\"package\":").append(quote(packageName));
+      out.append(",\"idlHash\":").append(quote(idlHash));
+      out.append(",\"generatorVersion\":").append(quote(generatorVersion));
+      out.append(",\"options\":").append(quote(options));
+      out.append(",\"files\":");
+      appendArray(out, files);
+      out.append(",\"exports\":");
+      appendArray(out, exports);
+      out.append('}');
+    }
+  }
+
+  private final Path manifestFile;
+  private final Path sourceDirectory;
+  private final Map<String, Entry> entries;
+
+  private GenerationManifest(final Path manifestFile,
+                             final Path sourceDirectory,
+                             final Map<String, Entry> entries) {
+    this.manifestFile = manifestFile;
+    this.sourceDirectory = sourceDirectory;
+    this.entries = entries;
+  }
+
+  static GenerationManifest load(final Path manifestFile, final Path sourceDirectory) {
+    final var entries = new ConcurrentHashMap<String, Entry>();
+    JsonIndexFile.read(
+        manifestFile, "programs", Builder::new, ENTRY_PARSER, Builder::create, Entry::packageName, entries
+    );
+    return new GenerationManifest(manifestFile, sourceDirectory, entries);
+  }
+
+  // Returns the previous entry if the package does not need to be re-generated.
+  Entry upToDate(final String packageName,
+                 final String idlHash,
+                 final String generatorVersion,
+                 final String options) {
+    if (generatorVersion == null) {
+      return null;
+    }
+    final var entry = entries.get(packageName);
+    if (entry == null || !entry.matches(idlHash, generatorVersion, options)) {
+      return null;
+    }
+    for (final var file : entry.files()) {
+      if (!Files.exists(sourceDirectory.resolve(file))) {
+        return null;
+      }
+    }
+    return entry;
+  }
+
+  void remove(final String packageName) {
+    entries.remove(packageName);
+  }
+
+  void put(final String name,
+           final String packageName,
+           final String idlHash,
+           final String generatorVersion,
+           final String options,
+           final List<Path> files,
+           final List<String> exports) {
+    if (generatorVersion == null) {
+      return;
+    }
+    final var relativeFiles = files.stream()
+        .map(sourceDirectory::relativize)
+        .map(Path::toString)
+        .map(file -> file.replace('\\', '/'))
+        .sorted()
+        .toList();
+    entries.put(packageName, new Entry(
+        name,
+        packageName,
+        idlHash,
+        generatorVersion,
+        options,
+        relativeFiles,
+        List.copyOf(exports)
+    ));
+  }
+
+  void write() {
+    JsonIndexFile.write(
+        manifestFile, "programs", entries.values(), Comparator.comparing(Entry::packageName), Entry::toJson
+    );
+  }
+
+  private static final ContextFieldBufferPredicate<Builder> ENTRY_PARSER = (builder, buf, offset, len, ji) -> {
+    if (fieldEquals("name", buf, offset, len)) {
+      builder.name = ji.readString();
+    } else if (fieldEquals("package", buf, offset, len)) {
+      builder.packageName = ji.readString();
+    } else if (fieldEquals("idlHash", buf, offset, len)) {
+      builder.idlHash = ji.readString();
+    } else if (fieldEquals("generatorVersion", buf, offset, len)) {
+      builder.generatorVersion = ji.readString();
+    } else if (fieldEquals("options", buf, offset, len)) {
+      builder.options = ji.readString();
+    } else if (fieldEquals("files", buf, offset, len)) {
+      builder.files = parseStrings(ji);
+    } else if (fieldEquals("exports", buf, offset, len)) {
+      builder.exports = parseStrings(ji);
+    } else {
+      ji.skip();
+    }
+    return true;
+  };
+
+  private static final class Builder {
+
+    private String name;
+    private String packageName;
+    private String idlHash;
+    private String generatorVersion;
+    private String options;
+    private List<String> files;
+    private List<String> exports;
+
+    private Builder() {
+    }
+
+    private Entry create() {
+      return new Entry(
+          name,
+          packageName,
+          idlHash == null ? "" : idlHash,
+          generatorVersion == null ? "" : generatorVersion,
+          options == null ? "" : options,
+          files == null ? List.of() : List.copyOf(files),
+          exports == null ? List.of() : List.copyOf(exports)
+      );
+    }
+  }
+}
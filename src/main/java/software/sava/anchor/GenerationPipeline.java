@@ -0,0 +1,213 @@
+package software.sava.anchor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+// Stages connected by bounded queues, each stage running its own number of workers on the given executor.
+//
+// A full queue blocks the upstream stage, so a slow stage limits memory instead of accumulating work, and the
+// queue depths which are logged periodically show which stage is the bottleneck.
+//
+// An item which fails a stage is logged and dropped so that the other items still complete, the failures are then
+// thrown once every stage has drained.
+final class GenerationPipeline {
+
+  private static final System.Logger logger = System.getLogger(GenerationPipeline.class.getName());
+
+  @FunctionalInterface
+  interface StageFunction<I, O> {
+
+    // Returns null to drop the item.
+    O apply(final I input) throws InterruptedException;
+  }
+
+  @FunctionalInterface
+  interface StageConsumer<I> {
+
+    void accept(final I input) throws InterruptedException;
+  }
+
+  // Bounded queue between stages, closed once every producer has finished.
+  static final class Channel<T> {
+
+    private static final Object END = new Object();
+
+    private final ArrayBlockingQueue<Object> queue;
+    private final AtomicInteger producers;
+    private final AtomicInteger maxDepth;
+
+    private Channel(final int capacity, final int producers) {
+      this.queue = new ArrayBlockingQueue<>(capacity + 1);
+      this.producers = new AtomicInteger(producers);
+      this.maxDepth = new AtomicInteger();
+    }
+
+    void put(final T item) throws InterruptedException {
+      queue.put(item);
+      maxDepth.accumulateAndGet(queue.size(), Math::max);
+    }
+
+    // Returns null once the channel is closed and drained.
+    @SuppressWarnings("unchecked")
+    T take() throws InterruptedException {
+      final var item = queue.take();
+      if (item == END) {
+        // Leave the end marker for the other consumers.
+        queue.put(END);
+        return null;
+      } else {
+        return (T) item;
+      }
+    }
+
+    void producerDone() throws InterruptedException {
+      if (producers.decrementAndGet() == 0) {
+        queue.put(END);
+      }
+    }
+
+    int depth() {
+      final int size = queue.size();
+      return producers.get() == 0 && size > 0 ? size - 1 : size;
+    }
+  }
+
+  private record Stage(String name,
+                       int concurrency,
+                       Channel<?> input,
+                       AtomicInteger active,
+                       AtomicLong processed,
+                       AtomicLong busyNanos) {
+
+    private String metrics() {
+      return String.format(
+          "%s[queued=%d, maxQueued=%d, active=%d/%d, processed=%d, busy=%dms]",
+          name, input.depth(), input.maxDepth.get(), active.get(), concurrency, processed.get(),
+          TimeUnit.NANOSECONDS.toMillis(busyNanos.get())
+      );
+    }
+  }
+
+  private final ExecutorService executor;
+  private final int queueCapacity;
+  private final List<Stage> stages;
+  private final List<CountDownLatch> workers;
+  private final Queue<RuntimeException> failures;
+
+  GenerationPipeline(final ExecutorService executor, final int queueCapacity) {
+    this.executor = executor;
+    this.queueCapacity = Math.max(1, queueCapacity);
+    this.stages = new ArrayList<>();
+    this.workers = new ArrayList<>();
+    this.failures = new ConcurrentLinkedQueue<>();
+  }
+
+  <T> Channel<T> source(final Collection<T> items) throws InterruptedException {
+    final var channel = new Channel<T>(Math.max(1, items.size()), 1);
+    for (final var item : items) {
+      channel.put(item);
+    }
+    channel.producerDone();
+    return channel;
+  }
+
+  <I, O> Channel<O> stage(final String name,
+                          final int concurrency,
+                          final Channel<I> input,
+                          final StageFunction<I, O> function) {
+    final int numWorkers = Math.max(1, concurrency);
+    final var output = new Channel<O>(queueCapacity, numWorkers);
+    start(name, numWorkers, input, output, function);
+    return output;
+  }
+
+  <I> void sink(final String name,
+                final int concurrency,
+                final Channel<I> input,
+                final StageConsumer<I> consumer) {
+    start(name, Math.max(1, concurrency), input, null, item -> {
+      consumer.accept(item);
+      return null;
+    });
+  }
+
+  private <I, O> void start(final String name,
+                            final int numWorkers,
+                            final Channel<I> input,
+                            final Channel<O> output,
+                            final StageFunction<I, O> function) {
+    final var stage = new Stage(name, numWorkers, input, new AtomicInteger(), new AtomicLong(), new AtomicLong());
+    stages.add(stage);
+    final var latch = new CountDownLatch(numWorkers);
+    workers.add(latch);
+    for (int i = 0; i < numWorkers; ++i) {
+      executor.execute(() -> {
+        try {
+          for (I item; (item = input.take()) != null; ) {
+            stage.active.incrementAndGet();
+            final long start = System.nanoTime();
+            O result;
+            try {
+              result = function.apply(item);
+            } catch (final RuntimeException e) {
+              logger.log(System.Logger.Level.ERROR, String.format("Failed to %s %s.", name, item), e);
+              failures.add(e);
+              result = null;
+            } finally {
+              stage.busyNanos.addAndGet(System.nanoTime() - start);
+              stage.processed.incrementAndGet();
+              stage.active.decrementAndGet();
+            }
+            if (result != null && output != null) {
+              output.put(result);
+            }
+          }
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          try {
+            if (output != null) {
+              output.producerDone();
+            }
+          } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            latch.countDown();
+          }
+        }
+      });
+    }
+  }
+
+  String metrics() {
+    return stages.stream().map(Stage::metrics).collect(Collectors.joining(" "));
+  }
+
+  // Waits for every stage to drain, logging the stage metrics every metricsIntervalMillis. Then throws the first
+  // failure of any stage, with the other failures suppressed.
+  void await(final long metricsIntervalMillis) throws InterruptedException {
+    for (final var latch : workers) {
+      while (!latch.await(metricsIntervalMillis, TimeUnit.MILLISECONDS)) {
+        logger.log(System.Logger.Level.INFO, metrics());
+      }
+    }
+    logger.log(System.Logger.Level.INFO, "Completed " + metrics());
+    final var failure = failures.poll();
+    if (failure != null) {
+      for (RuntimeException suppressed; (suppressed = failures.poll()) != null; ) {
+        failure.addSuppressed(suppressed);
+      }
+      throw failure;
+    }
+  }
+}
@@ -0,0 +1,16 @@
+package software.sava.anchor;
+
+// Non-successful HTTP response to a plain, non JSON-RPC, request such as fetching an IDL URL.
+final class HttpStatusException extends IllegalStateException {
+
+  private final int statusCode;
+
+  HttpStatusException(final String message, final int statusCode) {
+    super(message);
+    this.statusCode = statusCode;
+  }
+
+  int statusCode() {
+    return statusCode;
+  }
+}
@@ -0,0 +1,203 @@
+package software.sava.anchor;
+
+import software.sava.core.accounts.PublicKey;
+import systems.comodal.jsoniter.ContextFieldBufferPredicate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static software.sava.anchor.JsonIndexFile.quote;
+import static systems.comodal.jsoniter.JsonIterator.fieldEquals;
+
+// Content addressed cache of fetched IDLs.
+//
+// Raw IDL account data and IDL URL response bodies are stored under objects/<sha256>, and an index
+// maps each IDL source to the hash of its latest content. The data is kept compressed, it is
+// inflated while parsing, and IDL URLs are re-validated with conditional requests.
+final class IDLCache {
+
+  private static final System.Logger logger = System.getLogger(IDLCache.class.getName());
+
+  record Entry(String key,
+               String dataHash,
+               String eTag,
+               String lastModified) {
+
+    private void toJson(final StringBuilder out) {
+      out.append("{\"key\":").append(quote(key));
+      out.append(",\"dataHash\":").append(quote(dataHash));
+      if (eTag != null) {
+        out.append(",\"eTag\":").append(quote(eTag));
+      }
+      if (lastModified != null) {
+        out.append(",\"lastModified\":").append(quote(lastModified));
+      }
+      out.append('}');
+    }
+  }
+
+  private final Path indexFile;
+  private final Path objectsDirectory;
+  private final Map<String, Entry> entries;
+
+  private IDLCache(final Path indexFile, final Path objectsDirectory, final Map<String, Entry> entries) {
+    this.indexFile = indexFile;
+    this.objectsDirectory = objectsDirectory;
+    this.entries = entries;
+  }
+
+  static String accountKey(final PublicKey idlAddress) {
+    return "account:" + idlAddress.toBase58();
+  }
+
+  static String urlKey(final URI idlURL) {
+    return "url:" + idlURL;
+  }
+
+  static IDLCache load(final Path cacheDirectory) {
+    final var indexFile = cacheDirectory.resolve("index.json");
+    final var objectsDirectory = cacheDirectory.resolve("objects");
+    SourceFileWriter.createDirectories(objectsDirectory);
+    final var entries = new ConcurrentHashMap<String, Entry>();
+    JsonIndexFile.read(indexFile, "idls", Builder::new, ENTRY_PARSER, Builder::create, Entry::key, entries);
+    return new IDLCache(indexFile, objectsDirectory, entries);
+  }
+
+  // Returns the cached IDL data, used when running offline.
+  byte[] cachedIDLData(final String key) {
+    final var entry = entries.get(key);
+    return entry == null ? null : readObject(entry.dataHash());
+  }
+
+  // Stores the compressed IDL account data.
+  byte[] accountIDLData(final PublicKey idlAddress, final byte[] accountData) {
+    final var key = accountKey(idlAddress);
+    final var dataHash = JsonIndexFile.hash(accountData);
+    writeObject(dataHash, accountData);
+    final var entry = entries.get(key);
+    if (entry == null || !entry.dataHash().equals(dataHash)) {
+      entries.put(key, new Entry(key, dataHash, null, null));
+    }
+    return accountData;
+  }
+
+  // Fetches the IDL json, re-using the cached body if the server reports it as not modified.
+  byte[] urlIDLJson(final HttpClient httpClient, final URI idlURL) {
+    final var key = urlKey(idlURL);
+    final var entry = entries.get(key);
+    final var requestBuilder = HttpRequest.newBuilder().uri(idlURL).GET();
+    if (entry != null) {
+      if (entry.eTag() != null) {
+        requestBuilder.header("If-None-Match", entry.eTag());
+      }
+      if (entry.lastModified() != null) {
+        requestBuilder.header("If-Modified-Since", entry.lastModified());
+      }
+    }
+    final var response = httpClient.sendAsync(requestBuilder.build(), HttpResponse.BodyHandlers.ofByteArray()).join();
+    final int status = response.statusCode();
+    if (status == 304 && entry != null) {
+      final var json = readObject(entry.dataHash());
+      if (json != null) {
+        return json;
+      }
+      entries.remove(key);
+      return urlIDLJson(httpClient, idlURL);
+    } else if (status < 200 || status >= 300) {
+      throw new HttpStatusException(String.format("Failed to fetch IDL from %s, HTTP status %d.", idlURL, status), status);
+    }
+    final var json = response.body();
+    final var jsonHash = JsonIndexFile.hash(json);
+    writeObject(jsonHash, json);
+    final var headers = response.headers();
+    entries.put(key, new Entry(
+        key,
+        jsonHash,
+        headers.firstValue("ETag").orElse(null),
+        headers.firstValue("Last-Modified").orElse(null)
+    ));
+    return json;
+  }
+
+  private byte[] readObject(final String hash) {
+    final var file = objectsDirectory.resolve(hash);
+    if (!Files.exists(file)) {
+      return null;
+    }
+    try {
+      final var data = Files.readAllBytes(file);
+      if (JsonIndexFile.hash(data).equals(hash)) {
+        return data;
+      } else {
+        logger.log(System.Logger.Level.WARNING, "Ignoring corrupt IDL cache object " + file);
+        return null;
+      }
+    } catch (final IOException e) {
+      logger.log(System.Logger.Level.WARNING, "Failed to read IDL cache object " + file, e);
+      return null;
+    }
+  }
+
+  private void writeObject(final String hash, final byte[] data) {
+    final var file = objectsDirectory.resolve(hash);
+    if (Files.exists(file)) {
+      return;
+    }
+    try {
+      final var tempFile = Files.createTempFile(objectsDirectory, hash, ".tmp");
+      Files.write(tempFile, data, TRUNCATE_EXISTING, WRITE);
+      Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to write IDL cache object.", e);
+    }
+  }
+
+  void write() {
+    JsonIndexFile.write(indexFile, "idls", entries.values(), Comparator.comparing(Entry::key), Entry::toJson);
+  }
+
+  private static final ContextFieldBufferPredicate<Builder> ENTRY_PARSER = (builder, buf, offset, len, ji) -> {
+    if (fieldEquals("key", buf, offset, len)) {
+      builder.key = ji.readString();
+    } else if (fieldEquals("dataHash", buf, offset, len)) {
+      builder.dataHash = ji.readString();
+    } else if (fieldEquals("eTag", buf, offset, len)) {
+      builder.eTag = ji.readString();
+    } else if (fieldEquals("lastModified", buf, offset, len)) {
+      builder.lastModified = ji.readString();
+    } else {
+      ji.skip();
+    }
+    return true;
+  };
+
+  private static final class Builder {
+
+    private String key;
+    private String dataHash;
+    private String eTag;
+    private String lastModified;
+
+    private Builder() {
+    }
+
+    private Entry create() {
+      return key == null || dataHash == null
+          ? null
+          : new Entry(key, dataHash, eTag, lastModified);
+    }
+  }
+}
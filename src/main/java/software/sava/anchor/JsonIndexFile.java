@@ -0,0 +1,128 @@
+package software.sava.anchor;
+
+import systems.comodal.jsoniter.ContextFieldBufferPredicate;
+import systems.comodal.jsoniter.JsonIterator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static java.nio.file.StandardOpenOption.*;
+import static software.sava.core.crypto.Hash.sha256;
+import static systems.comodal.jsoniter.JsonIterator.fieldEquals;
+
+// Reads and writes the small json index files kept next to generated sources, the generation manifest and the IDL
+// cache index, which are a single object holding one array of flat entries: {"<field>":[{...},{...}]}.
+final class JsonIndexFile {
+
+  private static final System.Logger logger = System.getLogger(JsonIndexFile.class.getName());
+
+  private JsonIndexFile() {
+  }
+
+  static String hash(final byte[] data) {
+    return HexFormat.of().formatHex(sha256(data));
+  }
+
+  static String quote(final String str) {
+    if (str == null) {
+      return "null";
+    }
+    final var builder = new StringBuilder(str.length() + 2);
+    builder.append('"');
+    for (int i = 0; i < str.length(); ++i) {
+      final char c = str.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\');
+      }
+      builder.append(c);
+    }
+    return builder.append('"').toString();
+  }
+
+  static void appendArray(final StringBuilder out, final List<String> values) {
+    out.append('[');
+    final var iterator = values.iterator();
+    while (iterator.hasNext()) {
+      out.append(quote(iterator.next()));
+      if (iterator.hasNext()) {
+        out.append(',');
+      }
+    }
+    out.append(']');
+  }
+
+  static List<String> parseStrings(final JsonIterator ji) {
+    final var values = new ArrayList<String>();
+    while (ji.readArray()) {
+      values.add(ji.readString());
+    }
+    return values;
+  }
+
+  // Parses each entry of the array field into the map, keyed by the entry key. Entries which the builder rejects by
+  // returning null are dropped, and an unreadable file is logged and treated as empty.
+  static <B, E> void read(final Path file,
+                          final String arrayField,
+                          final Supplier<B> builderFactory,
+                          final ContextFieldBufferPredicate<B> entryParser,
+                          final Function<B, E> createEntry,
+                          final Function<E, String> entryKey,
+                          final Map<String, E> entries) {
+    if (!Files.exists(file)) {
+      return;
+    }
+    try (final var ji = JsonIterator.parse(Files.readAllBytes(file))) {
+      ji.testObject((buf, offset, len, _ji) -> {
+        if (fieldEquals(arrayField, buf, offset, len)) {
+          while (_ji.readArray()) {
+            final var entry = createEntry.apply(_ji.testObject(builderFactory.get(), entryParser));
+            if (entry != null) {
+              entries.put(entryKey.apply(entry), entry);
+            }
+          }
+        } else {
+          _ji.skip();
+        }
+        return true;
+      });
+    } catch (final IOException | RuntimeException e) {
+      logger.log(System.Logger.Level.WARNING, "Ignoring unreadable index file " + file, e);
+      entries.clear();
+    }
+  }
+
+  // Writes one entry per line, sorted so that the file diffs cleanly between runs.
+  static <E> void write(final Path file,
+                        final String arrayField,
+                        final Collection<E> entries,
+                        final Comparator<E> order,
+                        final BiConsumer<E, StringBuilder> toJson) {
+    final var out = new StringBuilder(entries.size() << 9);
+    out.append("{\"").append(arrayField).append("\":[");
+    final var iterator = entries.stream().sorted(order).iterator();
+    while (iterator.hasNext()) {
+      out.append("\n  ");
+      toJson.accept(iterator.next(), out);
+      if (iterator.hasNext()) {
+        out.append(',');
+      }
+    }
+    out.append("\n]}\n");
+    try {
+      Files.writeString(file, out.toString(), CREATE, TRUNCATE_EXISTING, WRITE);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to write " + file, e);
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package software.sava.anchor;
+
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static software.sava.core.encoding.ByteUtil.getInt32LE;
+import static software.sava.core.encoding.ByteUtil.putInt32LE;
+
+// Borsh string which keeps only its UTF-8 bytes and decodes the String on first access, used by generated records
+// when lazy or interned strings are enabled.
+//
+// Interned strings are shared through a fixed size pool keyed by their bytes, so that low cardinality values such as
+// market names and symbols are neither copied nor decoded again once seen. A colliding string replaces the pooled
+// one, which bounds the pool without any locking.
+public final class LazyString {
+
+  private static final int POOL_SIZE = 4_096;
+  private static final LazyString[] POOL = new LazyString[POOL_SIZE];
+
+  private final byte[] bytes;
+  private final int hash;
+  // Racy single-check, like String.hash, every thread decodes an equal String.
+  private String string;
+
+  private LazyString(final byte[] bytes, final int hash, final String string) {
+    this.bytes = bytes;
+    this.hash = hash;
+    this.string = string;
+  }
+
+  public static LazyString of(final String string) {
+    if (string == null) {
+      return null;
+    }
+    final byte[] bytes = string.getBytes(UTF_8);
+    return new LazyString(bytes, hash(bytes, 0, bytes.length), string);
+  }
+
+  // Reads the length prefixed string at the offset.
+  public static LazyString read(final byte[] data, final int offset) {
+    final int length = getInt32LE(data, offset);
+    final int from = offset + Integer.BYTES;
+    return new LazyString(Arrays.copyOfRange(data, from, from + length), hash(data, from, length), null);
+  }
+
+  // Reads the length prefixed string at the offset, returning the pooled instance if the same bytes were interned.
+  public static LazyString intern(final byte[] data, final int offset) {
+    final int length = getInt32LE(data, offset);
+    final int from = offset + Integer.BYTES;
+    final int hash = hash(data, from, length);
+    final int slot = hash & (POOL_SIZE - 1);
+    final var pooled = POOL[slot];
+    if (pooled != null
+        && pooled.hash == hash
+        && Arrays.equals(pooled.bytes, 0, pooled.bytes.length, data, from, from + length)) {
+      return pooled;
+    }
+    final var lazyString = new LazyString(Arrays.copyOfRange(data, from, from + length), hash, null);
+    POOL[slot] = lazyString;
+    return lazyString;
+  }
+
+  public static int writeOptional(final LazyString lazyString, final byte[] data, final int offset) {
+    if (lazyString == null) {
+      data[offset] = 0;
+      return 1;
+    } else {
+      data[offset] = 1;
+      return 1 + lazyString.write(data, offset + 1);
+    }
+  }
+
+  private static int hash(final byte[] data, final int from, final int length) {
+    int hash = length;
+    for (int i = from, to = from + length; i < to; ++i) {
+      hash = 31 * hash + data[i];
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  // Number of UTF-8 bytes, excluding the length prefix.
+  public int length() {
+    return bytes.length;
+  }
+
+  public byte[] toByteArray() {
+    return bytes.clone();
+  }
+
+  public int write(final byte[] data, final int offset) {
+    putInt32LE(data, offset, bytes.length);
+    System.arraycopy(bytes, 0, data, offset + Integer.BYTES, bytes.length);
+    return Integer.BYTES + bytes.length;
+  }
+
+  // Serialized length, including the length prefix.
+  public int l() {
+    return Integer.BYTES + bytes.length;
+  }
+
+  @Override
+  public String toString() {
+    var string = this.string;
+    if (string == null) {
+      string = new String(bytes, UTF_8);
+      this.string = string;
+    }
+    return string;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    return this == o || (o instanceof LazyString other && hash == other.hash && Arrays.equals(bytes, other.bytes));
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+}
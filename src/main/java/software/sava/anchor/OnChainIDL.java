@@ -6,11 +6,15 @@ import software.sava.core.programs.Discriminator;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.util.Base64;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.BiFunction;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
+import static java.util.Objects.requireNonNullElseGet;
 import static software.sava.core.accounts.PublicKey.PUBLIC_KEY_LENGTH;
 
 public record OnChainIDL(PublicKey address,
@@ -18,21 +22,47 @@ public record OnChainIDL(PublicKey address,
                          PublicKey authority,
                          byte[] json) {
 
+  private static final int INFLATER_BUFFER_SIZE = 8_192;
+  private static final ConcurrentLinkedQueue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+
+  // Returns the inflated IDL json as a stream, so that it can be parsed without materializing the json.
+  // Closing the stream returns its Inflater to a shared pool.
+  public static InputStream openJson(final byte[] data) {
+    int i = AnchorUtil.DISCRIMINATOR_LENGTH + PUBLIC_KEY_LENGTH;
+    final int compressedLength = ByteUtil.getInt32LE(data, i);
+    i += Integer.BYTES;
+    final var inflater = requireNonNullElseGet(INFLATERS.poll(), Inflater::new);
+    return new PooledInflaterInputStream(new ByteArrayInputStream(data, i, compressedLength), inflater);
+  }
+
+  private static final class PooledInflaterInputStream extends InflaterInputStream {
+
+    private boolean closed;
+
+    private PooledInflaterInputStream(final InputStream in, final Inflater inflater) {
+      super(in, inflater, INFLATER_BUFFER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        super.close();
+        inf.reset();
+        INFLATERS.offer(inf);
+      }
+    }
+  }
+
   public static BiFunction<PublicKey, byte[], OnChainIDL> FACTORY = (address, data) -> {
     if (data == null || data.length == 0) {
       return null;
     }
     final var discriminator = AnchorUtil.parseDiscriminator(data);
-    int i = AnchorUtil.DISCRIMINATOR_LENGTH;
-    final var authority = PublicKey.readPubKey(data, i);
-    i += PUBLIC_KEY_LENGTH;
-    final int compressedLength = ByteUtil.getInt32LE(data, i);
-    i += Integer.BYTES;
-    try (final var bais = new ByteArrayInputStream(data, i, compressedLength)) {
-      try (final var iis = new InflaterInputStream(bais)) {
-        final byte[] uncompressedData = iis.readAllBytes();
-        return new OnChainIDL(address, discriminator, authority, uncompressedData);
-      }
+    final var authority = PublicKey.readPubKey(data, AnchorUtil.DISCRIMINATOR_LENGTH);
+    try (final var json = openJson(data)) {
+      final byte[] uncompressedData = json.readAllBytes();
+      return new OnChainIDL(address, discriminator, authority, uncompressedData);
     } catch (final IOException e) {
       System.err.println(Base64.getEncoder().encodeToString(data));
       throw new UncheckedIOException(e);
@@ -0,0 +1,105 @@
+package software.sava.anchor;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Reads the data Anchor programs log with emit!, used by the generated event decoders.
+//
+// The log messages of a transaction are walked once, tracking which program is executing at each invocation
+// depth, and each "Program data: " line written by the requested program is base64 decoded into the same buffer.
+public final class ProgramLogs {
+
+  @FunctionalInterface
+  public interface DataConsumer {
+
+    // The data is only valid for the duration of the call, the buffer is overwritten by the next log line.
+    void accept(final byte[] data, final int length);
+  }
+
+  public static final String PROGRAM_DATA = "Program data: ";
+  private static final String PROGRAM = "Program ";
+  private static final String INVOKE = " invoke [";
+  private static final String SUCCESS = " success";
+  private static final String FAILED = " failed";
+
+  private static final int INITIAL_BUFFER_LENGTH = 512;
+  private static final byte[] BASE64 = new byte[128];
+
+  static {
+    Arrays.fill(BASE64, (byte) -1);
+    final var alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    for (int i = 0; i < alphabet.length(); ++i) {
+      BASE64[alphabet.charAt(i)] = (byte) i;
+    }
+  }
+
+  // Returns the buffer used to decode the data, which may have been replaced by a larger one, so that it can be
+  // passed back in for the next transaction. The buffer may be null.
+  public static byte[] forEachProgramData(final String program,
+                                          final List<String> logMessages,
+                                          byte[] buffer,
+                                          final DataConsumer consumer) {
+    int depth = 0;
+    // Bit per invocation depth, set if the program invoked at that depth is the requested program.
+    long invoked = 0;
+    for (final var log : logMessages) {
+      if (log.startsWith(PROGRAM_DATA)) {
+        if (depth > 0 && depth <= Long.SIZE && ((invoked >>> (depth - 1)) & 1) == 1) {
+          final int maxLength = ((log.length() - PROGRAM_DATA.length()) * 6) >> 3;
+          if (buffer == null || buffer.length < maxLength) {
+            buffer = new byte[Math.max(maxLength, buffer == null ? INITIAL_BUFFER_LENGTH : buffer.length << 1)];
+          }
+          final int length = decodeBase64(log, PROGRAM_DATA.length(), buffer);
+          if (length > 0) {
+            consumer.accept(buffer, length);
+          }
+        }
+      } else if (log.startsWith(PROGRAM)) {
+        final int programEnd = log.indexOf(' ', PROGRAM.length());
+        if (programEnd < 0) {
+          continue;
+        }
+        if (log.startsWith(INVOKE, programEnd)) {
+          if (++depth <= Long.SIZE) {
+            final long bit = 1L << (depth - 1);
+            final boolean isProgram = programEnd - PROGRAM.length() == program.length()
+                && log.startsWith(program, PROGRAM.length());
+            invoked = isProgram ? invoked | bit : invoked & ~bit;
+          }
+        } else if (depth > 0 && (log.startsWith(SUCCESS, programEnd) || log.startsWith(FAILED, programEnd))) {
+          --depth;
+        }
+      }
+    }
+    return buffer;
+  }
+
+  // Decodes the padded base64 text following the offset into the buffer, returning the number of bytes written,
+  // or -1 if the text is not valid base64. The buffer must hold at least (chars * 6) / 8 bytes.
+  public static int decodeBase64(final String src, final int offset, final byte[] buffer) {
+    int end = src.length();
+    while (end > offset && src.charAt(end - 1) == '=') {
+      --end;
+    }
+    int length = 0;
+    int bits = 0;
+    int accumulator = 0;
+    for (int i = offset, value; i < end; ++i) {
+      final char c = src.charAt(i);
+      if (c >= BASE64.length || (value = BASE64[c]) < 0) {
+        return -1;
+      }
+      accumulator = (accumulator << 6) | value;
+      bits += 6;
+      if (bits >= 8) {
+        bits -= 8;
+        buffer[length++] = (byte) (accumulator >> bits);
+        accumulator &= (1 << bits) - 1;
+      }
+    }
+    return length;
+  }
+
+  private ProgramLogs() {
+  }
+}
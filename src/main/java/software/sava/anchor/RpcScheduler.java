@@ -0,0 +1,186 @@
+package software.sava.anchor;
+
+import software.sava.rpc.json.http.response.JsonRpcException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Limits the request rate with a token bucket and the number of concurrent requests.
+//
+// Both limits adapt with AIMD: each success additively increases the rate and occasionally the
+// in-flight limit, rate limit responses halve both, and other failures reduce the rate.
+final class RpcScheduler {
+
+  private static final System.Logger logger = System.getLogger(RpcScheduler.class.getName());
+
+  static final double THROTTLED_DECREASE = 0.5;
+  static final double ERROR_DECREASE = 0.75;
+
+  private final String name;
+  private final double minRate;
+  private final double maxRate;
+  private final double additiveIncrease;
+  private final int maxInFlight;
+  private final ReentrantLock lock;
+  private final Condition inFlightAvailable;
+  private final Condition tokenAvailable;
+
+  private double rate;
+  private double tokens;
+  private long refilledNanos;
+  private int inFlightLimit;
+  private int inFlight;
+  private int successes;
+
+  RpcScheduler(final String name,
+               final double requestsPerSecond,
+               final double maxRequestsPerSecond,
+               final int maxInFlight) {
+    this.name = name;
+    this.minRate = Math.min(requestsPerSecond, 0.5);
+    this.maxRate = Math.max(requestsPerSecond, maxRequestsPerSecond);
+    this.additiveIncrease = Math.max(0.05, requestsPerSecond / 20);
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.lock = new ReentrantLock();
+    this.inFlightAvailable = lock.newCondition();
+    this.tokenAvailable = lock.newCondition();
+    this.rate = requestsPerSecond;
+    this.tokens = 1;
+    this.refilledNanos = System.nanoTime();
+    this.inFlightLimit = this.maxInFlight;
+  }
+
+  static final int TOO_MANY_REQUESTS = 429;
+  // JSON-RPC error code used by some RPC providers instead of echoing the HTTP status.
+  static final long RPC_TOO_MANY_REQUESTS = -32429;
+
+  // Rate limiting is detected from the HTTP status of IDL URL requests, and from the JSON-RPC error code of RPC
+  // requests, never from error messages, which may contain arbitrary slots, keys and sizes.
+  static boolean isThrottled(final Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      switch (cause) {
+        case HttpStatusException e when e.statusCode() == TOO_MANY_REQUESTS -> {
+          return true;
+        }
+        case JsonRpcException e when e.code() == TOO_MANY_REQUESTS || e.code() == RPC_TOO_MANY_REQUESTS -> {
+          return true;
+        }
+        default -> {
+        }
+      }
+    }
+    return false;
+  }
+
+  <T> T execute(final Supplier<T> request) throws InterruptedException {
+    acquire();
+    try {
+      final T result = request.get();
+      onSuccess();
+      return result;
+    } catch (final RuntimeException e) {
+      onFailure(isThrottled(e));
+      throw e;
+    } finally {
+      release();
+    }
+  }
+
+  private void acquire() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (inFlight >= inFlightLimit) {
+        inFlightAvailable.await();
+      }
+      ++inFlight;
+      try {
+        for (long now = System.nanoTime(); ; now = System.nanoTime()) {
+          refill(now);
+          if (tokens >= 1) {
+            tokens -= 1;
+            return;
+          }
+          tokenAvailable.awaitNanos((long) (((1 - tokens) / rate) * TimeUnit.SECONDS.toNanos(1)));
+        }
+      } catch (final InterruptedException e) {
+        --inFlight;
+        inFlightAvailable.signal();
+        throw e;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release() {
+    lock.lock();
+    try {
+      --inFlight;
+      inFlightAvailable.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void refill(final long now) {
+    tokens = Math.min(1, tokens + (((now - refilledNanos) / (double) TimeUnit.SECONDS.toNanos(1)) * rate));
+    refilledNanos = now;
+  }
+
+  void onSuccess() {
+    lock.lock();
+    try {
+      refill(System.nanoTime());
+      rate = Math.min(maxRate, rate + additiveIncrease);
+      if (inFlightLimit < maxInFlight && ++successes >= inFlightLimit) {
+        successes = 0;
+        ++inFlightLimit;
+        inFlightAvailable.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void onFailure(final boolean throttled) {
+    lock.lock();
+    try {
+      refill(System.nanoTime());
+      successes = 0;
+      if (throttled) {
+        rate = Math.max(minRate, rate * THROTTLED_DECREASE);
+        inFlightLimit = Math.max(1, (int) (inFlightLimit * THROTTLED_DECREASE));
+        // Pause for a full token so that requests already queued do not immediately follow.
+        tokens = Math.min(tokens, 0);
+      } else {
+        rate = Math.max(minRate, rate * ERROR_DECREASE);
+      }
+      logger.log(System.Logger.Level.DEBUG, String.format(
+          "%s %s, %.2f requests/s, %d in flight limit.",
+          name, throttled ? "throttled" : "failed", rate, inFlightLimit
+      ));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  double rate() {
+    lock.lock();
+    try {
+      return rate;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int inFlightLimit() {
+    lock.lock();
+    try {
+      return inFlightLimit;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,127 @@
+package software.sava.anchor;
+
+import software.sava.core.encoding.ByteUtil;
+
+import static software.sava.anchor.GenSrcOptions.Slices.BUFFER;
+
+// A bytes, Vec<u8>, [u8; N] or [u64; N] record field which is generated as a read-only view over the data it was read
+// from instead of a copy, see GenSrcOptions.slices. numElements is -1 for length prefixed vectors.
+record SliceField(GenSrcOptions.Slices slices, boolean longs, int numElements) {
+
+  static SliceField create(final GenSrcContext genSrcContext, final AnchorTypeContext type) {
+    final var slices = genSrcContext.options().slices();
+    if (slices == GenSrcOptions.Slices.COPY) {
+      return null;
+    }
+    return switch (type) {
+      case AnchorPrimitive(final AnchorType primitive) when primitive == AnchorType.bytes ->
+          new SliceField(slices, false, -1);
+      case AnchorVector(final AnchorPrimitive(final AnchorType primitive), final int depth)
+          when depth == 1 && (primitive == AnchorType.i8 || primitive == AnchorType.u8) ->
+          new SliceField(slices, false, -1);
+      case AnchorArray(final AnchorPrimitive(final AnchorType primitive), final int depth, final int numElements)
+          when depth == 1 -> switch (primitive) {
+        case i8, u8 -> new SliceField(slices, false, numElements);
+        case i64, u64 -> new SliceField(slices, true, numElements);
+        default -> null;
+      };
+      default -> null;
+    };
+  }
+
+  boolean isVector() {
+    return numElements < 0;
+  }
+
+  int byteLength() {
+    return longs ? numElements << 3 : numElements;
+  }
+
+  String typeName() {
+    return slices == BUFFER ? longs ? "LongBuffer" : "ByteBuffer" : "MemorySegment";
+  }
+
+  private void addImports(final GenSrcContext genSrcContext) {
+    if (slices == BUFFER) {
+      genSrcContext.addImport("java.nio.ByteBuffer");
+      if (longs) {
+        genSrcContext.addImport("java.nio.LongBuffer");
+        genSrcContext.addStaticImport("java.nio.ByteOrder.LITTLE_ENDIAN");
+      }
+    } else {
+      genSrcContext.addImport("java.lang.foreign.MemorySegment");
+      genSrcContext.addStaticImport("java.lang.foreign.ValueLayout.JAVA_BYTE");
+    }
+    if (isVector()) {
+      genSrcContext.addStaticImport(ByteUtil.class, "getInt32LE");
+      genSrcContext.addStaticImport(ByteUtil.class, "putInt32LE");
+    }
+  }
+
+  String generateRecordField(final GenSrcContext genSrcContext, final AnchorNamedType context) {
+    addImports(genSrcContext);
+    return String.format("%s%s %s", context.docComments(), typeName(), context.name());
+  }
+
+  private String byteSize(final String varName) {
+    return slices == BUFFER ? varName + ".capacity()" : "(int) " + varName + ".byteSize()";
+  }
+
+  String generateRead(final GenSrcContext genSrcContext,
+                      final String varName,
+                      final boolean hasNext,
+                      final String offsetVarName) {
+    addImports(genSrcContext);
+    final String offset;
+    final String length;
+    if (isVector()) {
+      offset = offsetVarName + " + 4";
+      length = String.format("getInt32LE(_data, %s)", offsetVarName);
+    } else {
+      offset = offsetVarName;
+      length = Integer.toString(byteLength());
+    }
+    final var slice = slices == BUFFER
+        ? String.format("ByteBuffer.wrap(_data).slice(%s, %s).asReadOnlyBuffer()%s",
+        offset, length, longs ? ".order(LITTLE_ENDIAN).asLongBuffer()" : "")
+        : String.format("MemorySegment.ofArray(_data).asSlice(%s, %s).asReadOnly()", offset, length);
+    final var readLine = String.format("final var %s = %s;", varName, slice);
+    if (!hasNext) {
+      return readLine;
+    } else if (isVector()) {
+      return readLine + String.format("%n%s += 4 + %s;", offsetVarName, byteSize(varName));
+    } else {
+      return readLine + String.format("%n%s += %d;", offsetVarName, byteLength());
+    }
+  }
+
+  String generateWrite(final GenSrcContext genSrcContext, final String varName) {
+    addImports(genSrcContext);
+    if (isVector()) {
+      final var byteSize = byteSize(varName);
+      final var copy = slices == BUFFER
+          ? String.format("%s.get(0, _data, i + 4, %s);", varName, byteSize)
+          : String.format("MemorySegment.copy(%s, JAVA_BYTE, 0, _data, i + 4, %s);", varName, byteSize);
+      return String.format("""
+          putInt32LE(_data, i, %s);
+          %s
+          i += 4 + %s;""", byteSize, copy, byteSize);
+    } else if (slices == BUFFER) {
+      return longs
+          ? String.format("""
+              ByteBuffer.wrap(_data).slice(i, %d).order(LITTLE_ENDIAN).asLongBuffer().put(0, %s, 0, %d);
+              i += %d;""", byteLength(), varName, numElements, byteLength())
+          : String.format("""
+              %s.get(0, _data, i, %d);
+              i += %d;""", varName, byteLength(), byteLength());
+    } else {
+      return String.format("""
+          MemorySegment.copy(%s, JAVA_BYTE, 0, _data, i, %d);
+          i += %d;""", varName, byteLength(), byteLength());
+    }
+  }
+
+  String generateLength(final String varName) {
+    return isVector() ? "(4 + " + byteSize(varName) + ')' : Integer.toString(byteLength());
+  }
+}
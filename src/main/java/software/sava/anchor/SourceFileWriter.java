@@ -0,0 +1,150 @@
+package software.sava.anchor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+
+// Writes generated files for a single program package, relative paths are resolved against the source directory.
+//
+// In sync mode only files whose content changed are written, and files which were not generated are deleted
+// afterward, preserving modification times so that downstream incremental compilation is not invalidated.
+// Otherwise, the package directory is deleted and re-created before writing.
+final class SourceFileWriter implements SourceSink {
+
+  private static final System.Logger logger = System.getLogger(SourceFileWriter.class.getName());
+
+  private final Path sourceDirectory;
+  private final Path packageDirectory;
+  private final boolean sync;
+  private final Set<Path> generatedFiles;
+  private final AtomicInteger numWritten;
+  private final AtomicInteger numUnchanged;
+
+  SourceFileWriter(final Path sourceDirectory, final Path packageDirectory, final boolean sync) {
+    this.sourceDirectory = sourceDirectory;
+    this.packageDirectory = packageDirectory;
+    this.sync = sync;
+    this.generatedFiles = ConcurrentHashMap.newKeySet(256);
+    this.numWritten = new AtomicInteger();
+    this.numUnchanged = new AtomicInteger();
+  }
+
+  static void createDirectories(final Path path) {
+    try {
+      Files.createDirectories(path);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to create source directory.", e);
+    }
+  }
+
+  private static void delete(final Path path) {
+    try {
+      Files.delete(path);
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to delete generated source file.", e);
+    }
+  }
+
+  private static List<Path> walk(final Path path) {
+    try (final var stream = Files.walk(path)) {
+      return stream.sorted(Comparator.reverseOrder()).toList();
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to list generated source files.", e);
+    }
+  }
+
+  private static boolean contentEquals(final Path file, final byte[] content) throws IOException {
+    return Files.isRegularFile(file)
+        && Files.size(file) == content.length
+        && Arrays.equals(Files.readAllBytes(file), content);
+  }
+
+  void prepare() {
+    if (!sync && Files.exists(packageDirectory)) {
+      walk(packageDirectory).forEach(SourceFileWriter::delete);
+    }
+    createDirectories(packageDirectory);
+  }
+
+  @Override
+  public void accept(final String path, final String source) {
+    accept(path, source.getBytes(UTF_8));
+  }
+
+  @Override
+  public void accept(final String path, final byte[] content) {
+    final var file = sourceDirectory.resolve(path);
+    final var parent = file.getParent();
+    if (!Files.isDirectory(parent)) {
+      createDirectories(parent);
+    }
+    write(file, content, "Failed to write generated file " + path);
+  }
+
+  static boolean writeIfChanged(final Path file, final byte[] content) throws IOException {
+    if (contentEquals(file, content)) {
+      return false;
+    } else {
+      Files.write(file, content, CREATE, TRUNCATE_EXISTING, WRITE);
+      return true;
+    }
+  }
+
+  private void write(final Path file, final byte[] content, final String errorMessage) {
+    try {
+      if (sync) {
+        if (writeIfChanged(file, content)) {
+          numWritten.incrementAndGet();
+        } else {
+          numUnchanged.incrementAndGet();
+        }
+      } else {
+        Files.write(file, content, CREATE, TRUNCATE_EXISTING, WRITE);
+        numWritten.incrementAndGet();
+      }
+      generatedFiles.add(file);
+    } catch (final IOException e) {
+      throw new UncheckedIOException(errorMessage, e);
+    }
+  }
+
+  // Deletes stale files and returns every generated file.
+  List<Path> finish() {
+    int numDeleted = 0;
+    if (sync) {
+      for (final var path : walk(packageDirectory)) {
+        if (Files.isDirectory(path)) {
+          if (!path.equals(packageDirectory) && isEmpty(path)) {
+            delete(path);
+          }
+        } else if (!generatedFiles.contains(path)) {
+          delete(path);
+          ++numDeleted;
+        }
+      }
+    }
+    logger.log(System.Logger.Level.DEBUG, String.format(
+        "%s: %d files written, %d unchanged, %d deleted.",
+        packageDirectory, numWritten.get(), numUnchanged.get(), numDeleted
+    ));
+    return generatedFiles.stream().sorted().toList();
+  }
+
+  private static boolean isEmpty(final Path directory) {
+    try (final var stream = Files.list(directory)) {
+      return stream.findAny().isEmpty();
+    } catch (final IOException e) {
+      throw new UncheckedIOException("Failed to list generated source directory.", e);
+    }
+  }
+}
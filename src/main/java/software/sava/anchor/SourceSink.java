@@ -0,0 +1,16 @@
+package software.sava.anchor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+// Receives generated files, the path is relative to the source directory and separated by '/'.
+// Files of a program are generated concurrently, so accept may be called from multiple threads at once.
+@FunctionalInterface
+public interface SourceSink {
+
+  void accept(final String path, final String source);
+
+  // Used for the idl json, which is already encoded.
+  default void accept(final String path, final byte[] content) {
+    accept(path, new String(content, UTF_8));
+  }
+}
@@ -0,0 +1,152 @@
+package software.sava.anchor;
+
+// Appends source code to a single buffer, indenting each line by the current depth as it is written.
+//
+// Lines which only contain whitespace are written as empty lines, so generated sources no longer need to be
+// re-split to remove blank lines, and nested snippets can be appended as is instead of being re-indented.
+final class SourceWriter {
+
+  private final StringBuilder out;
+  private final String tab;
+  private int depth;
+  private boolean lineStart;
+  private int pendingSpaces;
+
+  SourceWriter(final String tab, final int capacity) {
+    this.out = new StringBuilder(capacity);
+    this.tab = tab;
+    this.lineStart = true;
+  }
+
+  SourceWriter indent() {
+    ++depth;
+    return this;
+  }
+
+  SourceWriter outdent() {
+    --depth;
+    return this;
+  }
+
+  SourceWriter append(final char c) {
+    if (c == '\n') {
+      pendingSpaces = 0;
+      lineStart = true;
+      out.append('\n');
+    } else if (lineStart) {
+      if (c == ' ') {
+        ++pendingSpaces;
+      } else {
+        out.repeat(tab, depth).repeat(' ', pendingSpaces).append(c);
+        pendingSpaces = 0;
+        lineStart = false;
+      }
+    } else {
+      out.append(c);
+    }
+    return this;
+  }
+
+  SourceWriter append(final CharSequence text) {
+    for (int i = 0, len = text.length(); i < len; ++i) {
+      append(text.charAt(i));
+    }
+    return this;
+  }
+
+  SourceWriter append(final int value) {
+    return append(Integer.toString(value));
+  }
+
+  SourceWriter line(final CharSequence text) {
+    return append(text).append('\n');
+  }
+
+  SourceWriter newLine() {
+    return append('\n');
+  }
+
+  boolean isEmpty() {
+    return out.isEmpty();
+  }
+
+  // Terminates the current line, if any.
+  SourceWriter endLine() {
+    return lineStart ? this : append('\n');
+  }
+
+  // Appends lines with the whitespace surrounding the whole text removed, either joined by a single space, which
+  // drops the leading spaces of each continuation line, or with each continuation line indented by hangingIndent
+  // followed by its own leading spaces, so that callers can align continuation lines themselves, e.g. with a
+  // hangingIndent of zero.
+  SourceWriter appendLines(final CharSequence lines, final int hangingIndent, final boolean join) {
+    int from = 0;
+    int to = lines.length();
+    while (from < to && Character.isWhitespace(lines.charAt(from))) {
+      ++from;
+    }
+    while (to > from && Character.isWhitespace(lines.charAt(to - 1))) {
+      --to;
+    }
+    for (char c; from < to; ++from) {
+      c = lines.charAt(from);
+      if (c == '\n') {
+        if (join) {
+          while (from + 1 < to && lines.charAt(from + 1) == ' ') {
+            ++from;
+          }
+          append(' ');
+        } else {
+          append('\n');
+          for (int i = 0; i < hangingIndent; ++i) {
+            append(' ');
+          }
+        }
+      } else {
+        append(c);
+      }
+    }
+    return this;
+  }
+
+  // Whether lines should be joined onto a single line.
+  static boolean joinLines(final CharSequence lines, final int numLines, final int limit) {
+    if (numLines >= limit) {
+      return false;
+    }
+    for (int i = 1, len = lines.length(); i < len; ++i) {
+      if (lines.charAt(i) == '/' && lines.charAt(i - 1) == '/') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Replaces each new line and the spaces which follow it with a single space.
+  static String joinLines(final CharSequence lines) {
+    final int len = lines.length();
+    final var joined = new StringBuilder(len);
+    for (int i = 0; i < len; ++i) {
+      final char c = lines.charAt(i);
+      if (c == '\n' && i + 1 < len && lines.charAt(i + 1) == ' ') {
+        do {
+          ++i;
+        } while (i + 1 < len && lines.charAt(i + 1) == ' ');
+        joined.append(' ');
+      } else {
+        joined.append(c);
+      }
+    }
+    return joined.toString();
+  }
+
+  // Returns the source, ending with a single new line.
+  @Override
+  public String toString() {
+    int end = out.length();
+    while (end > 0 && out.charAt(end - 1) == '\n') {
+      --end;
+    }
+    return out.substring(0, end) + '\n';
+  }
+}
@@ -0,0 +1,125 @@
+package software.sava.anchor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serialized layout of each defined type, computed once per IDL and shared by every generator.
+//
+// Resolving whether a defined type is fixed length, and its size, would otherwise walk the defined types
+// recursively each time a field references it.
+public final class TypeLayouts {
+
+  // Field offsets and lengths are -1 once they depend on variable length data.
+  public record Layout(boolean fixedLength,
+                       int serializedLength,
+                       int fixedSerializedLength,
+                       int[] fieldOffsets,
+                       int[] fieldLengths) {
+
+    public int fieldOffset(final int field) {
+      return fieldOffsets[field];
+    }
+
+    public int fieldLength(final int field) {
+      return fieldLengths[field];
+    }
+
+    @Override
+    public String toString() {
+      return "Layout{fixedLength=" + fixedLength
+          + ", serializedLength=" + serializedLength
+          + ", fixedSerializedLength=" + fixedSerializedLength
+          + ", fieldOffsets=" + Arrays.toString(fieldOffsets)
+          + ", fieldLengths=" + Arrays.toString(fieldLengths)
+          + '}';
+    }
+  }
+
+  private static final int[] NO_FIELDS = new int[0];
+
+  private final Map<String, Layout> layouts;
+
+  TypeLayouts() {
+    this.layouts = new ConcurrentHashMap<>();
+  }
+
+  // Computes the layout of every defined type up front, so that generation only reads from the cache.
+  void analyze(final GenSrcContext genSrcContext) {
+    for (final var typeName : genSrcContext.definedTypes().keySet()) {
+      layout(genSrcContext, typeName);
+    }
+  }
+
+  public Layout layout(final GenSrcContext genSrcContext, final String typeName) {
+    final var layout = layouts.get(typeName);
+    if (layout != null) {
+      return layout;
+    }
+    final var definedType = genSrcContext.definedTypes().get(typeName);
+    if (definedType == null) {
+      throw new IllegalStateException("Failed to find defined type " + typeName);
+    }
+    final var computed = computeLayout(genSrcContext, definedType.type(), genSrcContext.isAccount(typeName));
+    final var previous = layouts.putIfAbsent(typeName, computed);
+    return previous == null ? computed : previous;
+  }
+
+  private static Layout computeLayout(final GenSrcContext genSrcContext,
+                                      final AnchorTypeContext type,
+                                      final boolean hasDiscriminator) {
+    if (type instanceof AnchorStruct(final List<AnchorNamedType> fields)) {
+      final var structLayout = structLayout(genSrcContext, fields, hasDiscriminator);
+      if (structLayout.fixedLength()) {
+        // Matches the size reported for nested references to the type.
+        final int serializedLength = type.serializedLength(genSrcContext, hasDiscriminator);
+        return new Layout(
+            true, serializedLength, serializedLength, structLayout.fieldOffsets(), structLayout.fieldLengths()
+        );
+      } else {
+        return structLayout;
+      }
+    } else {
+      final boolean fixedLength = type.isFixedLength(genSrcContext);
+      final int serializedLength = fixedLength ? type.serializedLength(genSrcContext, hasDiscriminator) : -1;
+      return new Layout(
+          fixedLength,
+          serializedLength,
+          Math.max(0, serializedLength),
+          NO_FIELDS,
+          NO_FIELDS
+      );
+    }
+  }
+
+  // Lays out the fields of a struct, which may also be an enum variant or instruction data and therefore
+  // not be a defined type.
+  static Layout structLayout(final GenSrcContext genSrcContext,
+                             final List<AnchorNamedType> fields,
+                             final boolean hasDiscriminator) {
+    final int numFields = fields.size();
+    final int[] fieldOffsets = new int[numFields];
+    final int[] fieldLengths = new int[numFields];
+    int offset = hasDiscriminator ? AnchorUtil.DISCRIMINATOR_LENGTH : 0;
+    int fixedSerializedLength = -1;
+    for (int i = 0; i < numFields; ++i) {
+      final var type = fields.get(i).type();
+      fieldOffsets[i] = offset;
+      if (offset >= 0 && type.isFixedLength(genSrcContext)) {
+        final int serializedLength = type.serializedLength(genSrcContext);
+        fieldLengths[i] = serializedLength;
+        offset += serializedLength;
+      } else {
+        fieldLengths[i] = -1;
+        if (offset >= 0) {
+          fixedSerializedLength = offset;
+          offset = -1;
+        }
+      }
+    }
+    return offset < 0
+        ? new Layout(false, -1, fixedSerializedLength, fieldOffsets, fieldLengths)
+        : new Layout(true, offset, offset, fieldOffsets, fieldLengths);
+  }
+}
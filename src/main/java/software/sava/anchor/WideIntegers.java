@@ -0,0 +1,348 @@
+package software.sava.anchor;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static software.sava.anchor.AnchorType.*;
+
+// Replaces u128, i128, u256 and i256 with generated value records of two or four longs, so that reading them does
+// not allocate a BigInteger and its backing array. BigIntegers are only created when converted.
+//
+// Each value record is registered as a defined struct of u64 words, so reads, writes, arrays, options, filters and
+// layouts are all generated as they are for any other fixed length defined type.
+record WideIntegers(AnchorIDL idl, Map<AnchorType, String> valueTypes) {
+
+  private static final AnchorType[] WIDE_TYPES = {u128, i128, u256, i256};
+
+  static WideIntegers create(final AnchorIDL idl, final GenSrcOptions options) {
+    if (!options.wideIntegersAsLongs()) {
+      return new WideIntegers(idl, Map.of());
+    }
+    final var valueTypes = new EnumMap<AnchorType, String>(AnchorType.class);
+    for (final var type : WIDE_TYPES) {
+      final var name = type.name().toUpperCase();
+      valueTypes.put(type, isDefined(idl, name) ? AnchorUtil.camelCase(idl.name(), true) + name : name);
+    }
+    final var rewriter = new Rewriter(valueTypes);
+
+    final var instructions = idl.instructions().stream().map(ix -> {
+      final var args = rewriter.fields(ix.args());
+      return args == ix.args() ? ix : new AnchorInstruction(ix.discriminator(), ix.name(), ix.accounts(), args);
+    }).toList();
+    final var accounts = rewriter.namedTypes(idl.accounts());
+    final var types = rewriter.namedTypes(idl.types());
+    final var events = rewriter.fields(idl.events());
+
+    final var usedValueTypes = new EnumMap<AnchorType, String>(AnchorType.class);
+    for (final var type : rewriter.used) {
+      final var name = valueTypes.get(type);
+      usedValueTypes.put(type, name);
+      types.put(name, valueNamedType(name, type));
+    }
+    if (usedValueTypes.isEmpty()) {
+      return new WideIntegers(idl, Map.of());
+    }
+
+    final var rewritten = new AnchorIDL(
+        idl.address(),
+        idl.version(),
+        idl.name(),
+        idl.constants(),
+        instructions,
+        accounts,
+        types,
+        events,
+        idl.errors(),
+        idl.metaData(),
+        idl.docs(),
+        idl.json()
+    );
+    return new WideIntegers(rewritten, usedValueTypes);
+  }
+
+  // Accounts and events are generated into the types package as well, so may also collide with a value type.
+  private static boolean isDefined(final AnchorIDL idl, final String name) {
+    if (idl.types().containsKey(name) || idl.accounts().containsKey(name)) {
+      return true;
+    }
+    for (final var event : idl.events()) {
+      if (event.name().equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<String> words(final AnchorType type) {
+    return type.dataLength() == Long.BYTES << 1
+        ? List.of("lo", "hi")
+        : List.of("w0", "w1", "w2", "w3");
+  }
+
+  private static AnchorNamedType valueNamedType(final String name, final AnchorType type) {
+    final var u64Type = new AnchorPrimitive(u64);
+    final var fields = words(type).stream()
+        .map(word -> new AnchorNamedType(null, word, null, null, u64Type, AnchorNamedType.NO_DOCS, false))
+        .toList();
+    final var docs = List.of(String.format(
+        "%s %d bit integer held as its little endian 64 bit words, from least to most significant.",
+        type == i128 || type == i256 ? "Signed" : "Unsigned", type.dataLength() << 3
+    ));
+    return new AnchorNamedType(null, name, AnchorSerialization.borsh, null, new AnchorStruct(fields), docs, false);
+  }
+
+  boolean isValueType(final String typeName) {
+    return valueTypes.containsValue(typeName);
+  }
+
+  // Generates the value record as a struct of its words, with conversions and comparisons added.
+  String generateSource(final GenSrcContext genSrcContext, final AnchorType type) {
+    final var name = valueTypes.get(type);
+    final var namedType = idl.types().get(name);
+    final var words = words(type);
+    final int numWords = words.size();
+    final boolean signed = type == i128 || type == i256;
+    final var msw = words.getLast();
+
+    genSrcContext.addImport(BigInteger.class);
+    final var recordSource = AnchorStruct.generateRecord(
+        genSrcContext, namedType, ((AnchorStruct) namedType.type()).fields(),
+        "public", "Borsh, Comparable<" + name + ">",
+        -1, false, null, false
+    );
+
+    final var out = new SourceWriter(genSrcContext.tab(), 4_096);
+    out.indent();
+    out.append("public static final ").append(name).append(" ZERO = new ").append(name).append('(')
+        .append(String.join(", ", words.stream().map(_ -> "0").toList())).line(");").newLine();
+
+    out.append("public static ").append(name).line(" valueOf(final long value) {");
+    out.indent().append("return new ").append(name).append("(value");
+    for (int w = 1; w < numWords; ++w) {
+      out.append(signed ? ", value >> 63" : ", 0");
+    }
+    out.line(");").outdent();
+    out.line("}").newLine();
+
+    out.append("public static ").append(name).line(" valueOf(final BigInteger value) {");
+    out.indent().append("return new ").append(name).line("(");
+    out.indent().indent();
+    for (int w = 0; w < numWords; ++w) {
+      out.append(w == 0 ? "value.longValue()" : "value.shiftRight(" + (w << 6) + ").longValue()")
+          .append(w + 1 < numWords ? "," : "").newLine();
+    }
+    out.outdent().outdent();
+    out.line(");").outdent();
+    out.line("}").newLine();
+
+    out.line("public boolean isZero() {");
+    out.indent().append("return (").append(String.join(" | ", words)).line(") == 0;").outdent();
+    out.line("}").newLine();
+
+    if (signed) {
+      out.line("public int signum() {");
+      out.indent().append("return ").append(msw).line(" < 0 ? -1 : isZero() ? 0 : 1;").outdent();
+      out.line("}").newLine();
+    }
+
+    out.line("// Whether longValue() is exact.");
+    out.line("public boolean fitsInLong() {");
+    out.indent();
+    if (signed) {
+      out.append("final long sign = ").append(words.getFirst()).line(" >> 63;");
+      out.append("return ");
+      for (int w = 1; w < numWords; ++w) {
+        if (w > 1) {
+          out.append(" && ");
+        }
+        out.append(words.get(w)).append(" == sign");
+      }
+    } else {
+      out.append("return ").append(words.getFirst()).append(" >= 0");
+      for (int w = 1; w < numWords; ++w) {
+        out.append(" && ").append(words.get(w)).append(" == 0");
+      }
+    }
+    out.line(";").outdent();
+    out.line("}").newLine();
+
+    out.line("// The low 64 bits, as with BigInteger.longValue().");
+    out.line("public long longValue() {");
+    out.indent().append("return ").append(words.getFirst()).line(";").outdent();
+    out.line("}").newLine();
+
+    out.line("public double doubleValue() {");
+    out.indent();
+    if (signed) {
+      // Converts the magnitude of negative values, so that sign extended words do not cancel out.
+      out.append("if (").append(msw).line(" < 0) {");
+      out.indent();
+      out.append("boolean carry = true;").newLine();
+      for (int w = 0; w < numWords; ++w) {
+        final var word = words.get(w);
+        out.append("final long _").append(word).append(" = ~").append(word).line(" + (carry ? 1 : 0);");
+        if (w + 1 < numWords) {
+          out.append("carry &= ").append(word).line(" == 0;");
+        }
+      }
+      out.append("return -unsignedDouble(");
+      for (int w = 0; w < numWords; ++w) {
+        if (w > 0) {
+          out.append(", ");
+        }
+        out.append('_').append(words.get(w));
+      }
+      out.line(");");
+      out.outdent();
+      out.line("}");
+    }
+    out.append("return unsignedDouble(").append(String.join(", ", words)).line(");");
+    out.outdent();
+    out.line("}").newLine();
+
+    out.append("private static double unsignedDouble(");
+    for (int w = 0; w < numWords; ++w) {
+      if (w > 0) {
+        out.append(", ");
+      }
+      out.append("final long ").append(words.get(w));
+    }
+    out.line(") {");
+    out.indent();
+    out.append("double value = unsignedDouble(").append(msw).line(");");
+    for (int w = numWords - 2; w >= 0; --w) {
+      out.append("value = value * 0x1p64 + unsignedDouble(").append(words.get(w)).line(");");
+    }
+    out.line("return value;");
+    out.outdent();
+    out.line("}").newLine();
+
+    out.line("private static double unsignedDouble(final long word) {");
+    out.indent().line("return word >= 0 ? word : ((word >>> 1) | (word & 1)) * 2.0;").outdent();
+    out.line("}").newLine();
+
+    out.line("public BigInteger toBigInteger() {");
+    out.indent();
+    out.line("final byte[] bigEndian = new byte[BYTES];");
+    out.line("write(bigEndian, 0);");
+    out.line("for (int i = 0, j = BYTES - 1; i < j; ++i, --j) {");
+    out.indent();
+    out.line("final byte b = bigEndian[i];");
+    out.line("bigEndian[i] = bigEndian[j];");
+    out.line("bigEndian[j] = b;");
+    out.outdent();
+    out.line("}");
+    out.line(signed ? "return new BigInteger(bigEndian);" : "return new BigInteger(1, bigEndian);");
+    out.outdent();
+    out.line("}").newLine();
+
+    out.line("@Override");
+    out.append("public int compareTo(final ").append(name).line(" o) {");
+    out.indent();
+    out.append("int compare = ").append(signed ? "Long.compare(" : "Long.compareUnsigned(")
+        .append(msw).append(", o.").append(msw).line(");");
+    for (int w = numWords - 2; w >= 0; --w) {
+      final var word = words.get(w);
+      out.line("if (compare != 0) {");
+      out.indent().line("return compare;").outdent();
+      out.line("}");
+      out.append("compare = Long.compareUnsigned(").append(word).append(", o.").append(word).line(");");
+    }
+    out.line("return compare;");
+    out.outdent();
+    out.line("}");
+
+    final int end = recordSource.lastIndexOf('}');
+    final var source = recordSource.substring(0, end) + '\n' + out + '}';
+    return AnchorStruct.generateSource(genSrcContext, genSrcContext.typePackage(), source);
+  }
+
+  private static final class Rewriter {
+
+    private final Map<AnchorType, String> valueTypes;
+    private final List<AnchorType> used;
+
+    private Rewriter(final Map<AnchorType, String> valueTypes) {
+      this.valueTypes = valueTypes;
+      this.used = new ArrayList<>(WIDE_TYPES.length);
+    }
+
+    private Map<String, AnchorNamedType> namedTypes(final Map<String, AnchorNamedType> namedTypes) {
+      final var rewritten = HashMap.<String, AnchorNamedType>newHashMap(namedTypes.size() + WIDE_TYPES.length);
+      for (final var entry : namedTypes.entrySet()) {
+        rewritten.put(entry.getKey(), namedType(entry.getValue()));
+      }
+      return rewritten;
+    }
+
+    // Returns the same list if no field changed.
+    private List<AnchorNamedType> fields(final List<AnchorNamedType> fields) {
+      List<AnchorNamedType> rewritten = null;
+      for (int i = 0; i < fields.size(); ++i) {
+        final var field = fields.get(i);
+        final var namedType = namedType(field);
+        if (namedType != field && rewritten == null) {
+          rewritten = new ArrayList<>(fields);
+        }
+        if (rewritten != null) {
+          rewritten.set(i, namedType);
+        }
+      }
+      return rewritten == null ? fields : rewritten;
+    }
+
+    private AnchorNamedType namedType(final AnchorNamedType namedType) {
+      final var type = namedType.type();
+      final var rewritten = type == null ? null : type(type);
+      return rewritten == type ? namedType : new AnchorNamedType(
+          namedType.discriminator(),
+          namedType.name(),
+          namedType.serialization(),
+          namedType.representation(),
+          rewritten,
+          namedType.docs(),
+          namedType.index()
+      );
+    }
+
+    private AnchorTypeContext type(final AnchorTypeContext type) {
+      return switch (type) {
+        case AnchorPrimitive(final AnchorType primitive) when valueTypes.containsKey(primitive) -> {
+          if (!used.contains(primitive)) {
+            used.add(primitive);
+          }
+          yield new AnchorDefined(valueTypes.get(primitive));
+        }
+        case AnchorArray array -> {
+          final var genericType = type(array.genericType());
+          yield genericType == array.genericType() ? array : new AnchorArray(genericType, array.depth(), array.numElements());
+        }
+        case AnchorVector vector -> {
+          final var genericType = type(vector.genericType());
+          yield genericType == vector.genericType() ? vector : new AnchorVector(genericType, vector.depth());
+        }
+        case AnchorOption option -> {
+          final var genericType = type(option.genericType());
+          yield genericType == option.genericType() ? option : new AnchorOption(genericType);
+        }
+        case AnchorStruct(final List<AnchorNamedType> fields) -> {
+          final var rewritten = fields(fields);
+          yield rewritten == fields ? type : new AnchorStruct(rewritten);
+        }
+        case AnchorEnum(final List<AnchorNamedType> values) -> {
+          final var rewritten = fields(values);
+          yield rewritten == values ? type : new AnchorEnum(rewritten);
+        }
+        case AnchorTypeContextList(final List<AnchorNamedType> fields) -> {
+          final var rewritten = fields(fields);
+          yield rewritten == fields ? type : new AnchorTypeContextList(rewritten);
+        }
+        default -> type;
+      };
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+import software.sava.core.accounts.PublicKey;
+import software.sava.core.rpc.Filter;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class AnchorUtilTests {
+
+  private static byte[] data(final int length) {
+    final byte[] data = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      data[i] = (byte) i;
+    }
+    return data;
+  }
+
+  @Test
+  void memCompFilter() {
+    final byte[] data = data(16);
+    assertTrue(AnchorUtil.matches(Filter.createMemCompFilter(0, new byte[]{0, 1, 2}), data));
+    assertTrue(AnchorUtil.matches(Filter.createMemCompFilter(13, new byte[]{13, 14, 15}), data));
+    assertFalse(AnchorUtil.matches(Filter.createMemCompFilter(12, new byte[]{13, 14, 15}), data));
+    // Out of bounds compares do not match rather than throw.
+    assertFalse(AnchorUtil.matches(Filter.createMemCompFilter(14, new byte[]{14, 15, 16}), data));
+    assertFalse(AnchorUtil.matches(Filter.createMemCompFilter(16, new byte[]{0}), data));
+  }
+
+  @Test
+  void dataSizeFilter() {
+    final byte[] data = data(16);
+    assertTrue(AnchorUtil.matches(Filter.createDataSizeFilter(16), data));
+    assertFalse(AnchorUtil.matches(Filter.createDataSizeFilter(15), data));
+    assertFalse(AnchorUtil.matches(Filter.createDataSizeFilter(17), data));
+  }
+
+  @Test
+  void filters() {
+    final byte[] data = data(16);
+    final var memCompFilter = Filter.createMemCompFilter(4, new byte[]{4, 5});
+    assertTrue(AnchorUtil.matches(List.of(), data));
+    assertTrue(AnchorUtil.matches(List.of(Filter.createDataSizeFilter(16), memCompFilter), data));
+    assertFalse(AnchorUtil.matches(List.of(Filter.createDataSizeFilter(8), memCompFilter), data));
+    assertFalse(AnchorUtil.matches(List.of(Filter.createDataSizeFilter(16), Filter.createMemCompFilter(4, new byte[]{5})), data));
+  }
+
+  @Test
+  void publicKeyEquals() {
+    final byte[] data = data(40);
+    final byte[] keyBytes = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    System.arraycopy(data, 8, keyBytes, 0, keyBytes.length);
+    final var key = PublicKey.createPubKey(keyBytes);
+    assertTrue(AnchorUtil.publicKeyEquals(data, 8, key));
+    assertFalse(AnchorUtil.publicKeyEquals(data, 7, key));
+    // Differs only in the last word.
+    data[39] = 0;
+    assertFalse(AnchorUtil.publicKeyEquals(data, 8, key));
+  }
+
+  @Test
+  void wideIntegerEquals() {
+    final byte[] data = new byte[20];
+    // -2 as a little-endian i128 at offset 4.
+    for (int i = 4; i < 20; ++i) {
+      data[i] = (byte) 0xFF;
+    }
+    data[4] = (byte) 0xFE;
+    assertTrue(AnchorUtil.wideIntegerEquals(data, 4, 16, true, BigInteger.valueOf(-2)));
+    assertFalse(AnchorUtil.wideIntegerEquals(data, 4, 16, true, BigInteger.valueOf(2)));
+
+    // The same bits as a u128 are 2^128 - 2.
+    final var unsigned = BigInteger.ONE.shiftLeft(128).subtract(BigInteger.TWO);
+    assertTrue(AnchorUtil.wideIntegerEquals(data, 4, 16, false, unsigned));
+    assertFalse(AnchorUtil.wideIntegerEquals(data, 4, 16, false, BigInteger.valueOf(-2)));
+    assertFalse(AnchorUtil.wideIntegerEquals(data, 4, 16, true, unsigned));
+
+    data[12] = 1;
+    for (int i = 13; i < 20; ++i) {
+      data[i] = 0;
+    }
+    // 2^64 + (2^64 - 2)
+    final var value = BigInteger.ONE.shiftLeft(65).subtract(BigInteger.TWO);
+    assertTrue(AnchorUtil.wideIntegerEquals(data, 4, 16, true, value));
+    assertTrue(AnchorUtil.wideIntegerEquals(data, 4, 16, false, value));
+  }
+}
@@ -1,6 +1,7 @@
 package software.sava.anchor;
 
 import org.junit.jupiter.api.Test;
+import software.sava.core.encoding.ByteUtil;
 import software.sava.core.programs.Discriminator;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -12,4 +13,22 @@ final class DiscriminatorTests {
     final var discriminator = AnchorUtil.toDiscriminator("wsolWrap");
     assertEquals(Discriminator.toDiscriminator(26, 2, 139, 159, 239, 195, 193, 9), discriminator);
   }
+
+  @Test
+  void testEventDiscriminator() {
+    final var discriminator = AnchorUtil.toEventDiscriminator("NewUserRecord");
+    assertEquals(Discriminator.toDiscriminator(236, 186, 113, 219, 42, 51, 149, 249), discriminator);
+  }
+
+  @Test
+  void testAccountDiscriminator() {
+    final var discriminator = AnchorUtil.toAccountDiscriminator("Whirlpool");
+    assertEquals(Discriminator.toDiscriminator(63, 149, 209, 12, 225, 128, 99, 9), discriminator);
+  }
+
+  @Test
+  void testEventIxTag() {
+    final byte[] eventIxTag = {(byte) 228, 69, (byte) 165, 46, 81, (byte) 203, (byte) 154, 29};
+    assertEquals(AnchorUtil.EVENT_IX_TAG_LE, ByteUtil.getInt64LE(eventIxTag, 0));
+  }
 }
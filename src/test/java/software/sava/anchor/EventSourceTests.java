@@ -0,0 +1,98 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class EventSourceTests {
+
+  private static final String IDL = """
+      {
+        "address": "11111111111111111111111111111111",
+        "version": "0.1.0",
+        "name": "event_test",
+        "instructions": [],
+        "accounts": [
+          {
+            "name": "Market",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "authority", "type": "publicKey"},
+                {"name": "price", "type": "u64"}
+              ]
+            }
+          }
+        ],
+        "types": [],
+        "events": [
+          {
+            "name": "Market",
+            "fields": [
+              {"name": "authority", "type": "publicKey", "index": false},
+              {"name": "price", "type": "u64", "index": false}
+            ]
+          },
+          {
+            "name": "Fill",
+            "fields": [
+              {"name": "price", "type": "u64", "index": false}
+            ]
+          }
+        ],
+        "errors": []
+      }
+      """;
+
+  @Test
+  void accountEvents() {
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.event", AnchorIDL.parseIDL(IDL.getBytes(UTF_8)), GenSrcOptions.DEFAULT
+    );
+    final var market = sources.get("test/event/types/Market.java");
+    assertTrue(market.contains("implements EventTestAccount, EventTestEvent {"), market);
+
+    final var eventInterface = sources.get("test/event/types/EventTestEvent.java");
+    assertTrue(eventInterface.contains("Fill,"), eventInterface);
+    assertTrue(eventInterface.contains("Market {"), eventInterface);
+
+    // The account record reads the event discriminator itself.
+    final var events = sources.get("test/event/EventTestEvents.java");
+    assertTrue(events.contains("MARKET_DISCRIMINATOR = toDiscriminator("), events);
+    assertTrue(events.contains("Market.read(data, offset)"), events);
+    assertTrue(events.contains("Fill.read(data, offset + 8)"), events);
+  }
+
+  @Test
+  void customEventDiscriminators() {
+    final var idl = """
+        {
+          "address": "11111111111111111111111111111111",
+          "metadata": {"name": "custom_event_test", "version": "0.1.0", "spec": "0.1.0"},
+          "instructions": [],
+          "accounts": [],
+          "events": [
+            {"name": "Fill", "discriminator": [7]},
+            {"name": "Cancel", "discriminator": [8, 9]}
+          ],
+          "types": [
+            {"name": "Fill", "type": {"kind": "struct", "fields": [{"name": "price", "type": "u64"}]}},
+            {"name": "Cancel", "type": {"kind": "struct", "fields": [{"name": "id", "type": "u32"}]}}
+          ],
+          "errors": []
+        }
+        """;
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.custom.event", AnchorIDL.parseIDL(idl.getBytes(UTF_8)), GenSrcOptions.DEFAULT
+    );
+    final var events = sources.get("test/custom/event/CustomEventTestEvents.java");
+    assertTrue(events.contains("FILL_DISCRIMINATOR = toDiscriminator(7);"), events);
+    assertTrue(events.contains("if (discriminatorEquals(data, offset, length, FILL_DISCRIMINATOR)) {"), events);
+    // Events are read following their own discriminator length.
+    assertTrue(events.contains("Fill.read(data, offset + 1)"), events);
+    assertTrue(events.contains("Cancel.read(data, offset + 2)"), events);
+    assertFalse(events.contains("final long discriminator"), events);
+  }
+}
@@ -28,4 +28,25 @@ final class FormatTests {
         zxcv
         """, AnchorSourceGenerator.removeBlankLines(str));
   }
+
+  @Test
+  void sourceWriter() {
+    final var out = new SourceWriter("  ", 256);
+    out.append("record A(").appendLines("int a,\nint b", "record A(".length(), false).line(") {");
+    out.indent();
+    out.line("   ").newLine();
+    out.append("return ").appendLines("a\n     + b", 0, SourceWriter.joinLines("a\n     + b", 2, 3)).line(";");
+    out.append("return ").appendLines("a\n     + b", 0, false).line(";");
+    out.outdent().append("}\n\n");
+    assertEquals("""
+        record A(int a,
+                 int b) {
+        
+        
+          return a + b;
+          return a
+               + b;
+        }
+        """, out.toString());
+  }
 }
@@ -0,0 +1,49 @@
+package software.sava.anchor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Writes generated sources along with a main class, then compiles and runs them with the source launcher, failing if
+// the main class does not exit normally.
+final class GeneratedSources {
+
+  static void run(final Path sourceDirectory,
+                  final Map<String, String> sources,
+                  final String mainPath,
+                  final String mainSource) throws IOException, InterruptedException {
+    for (final var source : sources.entrySet()) {
+      final var file = sourceDirectory.resolve(source.getKey());
+      Files.createDirectories(file.getParent());
+      Files.writeString(file, source.getValue());
+    }
+    final var mainFile = sourceDirectory.resolve(mainPath);
+    Files.writeString(mainFile, mainSource);
+
+    final var classPath = Stream.of(System.getProperty("jdk.module.path"), System.getProperty("java.class.path"))
+        .filter(path -> path != null && !path.isBlank())
+        .reduce((a, b) -> a + File.pathSeparator + b)
+        .orElseThrow();
+    final var command = new ArrayList<String>();
+    command.add(ProcessHandle.current().info().command().orElse("java"));
+    command.add("--class-path");
+    command.add(classPath);
+    command.add(mainFile.toString());
+    final var process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    final var output = new String(process.getInputStream().readAllBytes(), UTF_8);
+    assertTrue(process.waitFor(2, TimeUnit.MINUTES));
+    assertEquals(0, process.exitValue(), output);
+  }
+
+  private GeneratedSources() {
+  }
+}
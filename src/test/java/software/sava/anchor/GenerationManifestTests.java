@@ -0,0 +1,74 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+final class GenerationManifestTests {
+
+  private static final String PACKAGE = "software.sava.anchor.programs.test";
+  private static final String VERSION = "1.2.3";
+
+  @Test
+  void upToDate(@TempDir final Path sourceDirectory) throws IOException {
+    final var idlHash = JsonIndexFile.hash("{\"name\":\"test\"}".getBytes(UTF_8));
+    final var options = GenSrcOptions.DEFAULT.toString();
+    final var programFile = sourceDirectory.resolve("software/sava/anchor/programs/test/TestProgram.java");
+    Files.createDirectories(programFile.getParent());
+    Files.writeString(programFile, "final class TestProgram {}");
+
+    final var manifestFile = sourceDirectory.resolve("manifest.json");
+    final var manifest = GenerationManifest.load(manifestFile, sourceDirectory);
+    manifest.put("test", PACKAGE, idlHash, VERSION, options, List.of(programFile), List.of("exports " + PACKAGE + ";"));
+    manifest.write();
+
+    // Reload to check the manifest survives a round trip through the file.
+    final var loaded = GenerationManifest.load(manifestFile, sourceDirectory);
+    final var entry = loaded.upToDate(PACKAGE, idlHash, VERSION, options);
+    assertNotNull(entry);
+    assertEquals(List.of("software/sava/anchor/programs/test/TestProgram.java"), entry.files());
+    assertEquals(List.of("exports " + PACKAGE + ";"), entry.exports());
+
+    assertNull(loaded.upToDate("software.sava.anchor.programs.other", idlHash, VERSION, options));
+    // A changed IDL.
+    final var otherHash = JsonIndexFile.hash("{\"name\":\"other\"}".getBytes(UTF_8));
+    assertNull(loaded.upToDate(PACKAGE, otherHash, VERSION, options));
+    // A new generator version, or an unknown version, which never matches.
+    assertNull(loaded.upToDate(PACKAGE, idlHash, "1.2.4", options));
+    assertNull(loaded.upToDate(PACKAGE, idlHash, null, options));
+    // Changed generator options.
+    assertNull(loaded.upToDate(PACKAGE, idlHash, VERSION, GenSrcOptions.DEFAULT.withLazyStrings(true).toString()));
+    assertNull(loaded.upToDate(PACKAGE, idlHash, VERSION, GenSrcOptions.DEFAULT.withTabLength(4).toString()));
+    // A generated file was deleted.
+    Files.delete(programFile);
+    assertNull(loaded.upToDate(PACKAGE, idlHash, VERSION, options));
+  }
+
+  @Test
+  void remove(@TempDir final Path sourceDirectory) {
+    final var manifestFile = sourceDirectory.resolve("manifest.json");
+    final var manifest = GenerationManifest.load(manifestFile, sourceDirectory);
+    final var options = GenSrcOptions.DEFAULT.toString();
+    manifest.put("test", PACKAGE, "hash", VERSION, options, List.of(), List.of());
+    assertNotNull(manifest.upToDate(PACKAGE, "hash", VERSION, options));
+    manifest.remove(PACKAGE);
+    assertNull(manifest.upToDate(PACKAGE, "hash", VERSION, options));
+  }
+
+  @Test
+  void corruptManifest(@TempDir final Path sourceDirectory) throws IOException {
+    final var manifestFile = sourceDirectory.resolve("manifest.json");
+    Files.writeString(manifestFile, "{\"programs\":[{\"package\":");
+    final var manifest = GenerationManifest.load(manifestFile, sourceDirectory);
+    assertNull(manifest.upToDate(PACKAGE, "hash", VERSION, GenSrcOptions.DEFAULT.toString()));
+  }
+}
@@ -0,0 +1,88 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+final class GenerationPipelineTests {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+  private static final List<Integer> ITEMS = IntStream.range(0, 256).boxed().toList();
+
+  @Test
+  void fullQueues() {
+    final var written = new ConcurrentLinkedQueue<Integer>();
+    assertTimeoutPreemptively(TIMEOUT, () -> {
+      try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        // A single slot between each stage and a slow sink keeps every queue full.
+        final var pipeline = new GenerationPipeline(executor, 1);
+        final var doubled = pipeline.stage("double", 4, pipeline.source(ITEMS), item -> item << 1);
+        final var odd = pipeline.stage("odd", 2, doubled, item -> item + 1);
+        pipeline.sink("write", 1, odd, item -> {
+          Thread.sleep(1);
+          written.add(item);
+        });
+        pipeline.await(100);
+      }
+    });
+    assertEquals(
+        ITEMS.stream().map(item -> (item << 1) + 1).sorted().toList(),
+        written.stream().sorted().toList()
+    );
+  }
+
+  @Test
+  void failuresAreThrownAfterDraining() {
+    final var failure = new IllegalStateException("failed 7");
+    final var written = new ConcurrentLinkedQueue<Integer>();
+    final var thrown = assertTimeoutPreemptively(TIMEOUT, () -> {
+      try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        final var pipeline = new GenerationPipeline(executor, 1);
+        final var parsed = pipeline.stage("parse", 2, pipeline.source(ITEMS), item -> {
+          if (item == 7) {
+            throw failure;
+          } else if (item == 9) {
+            throw new IllegalArgumentException("failed 9");
+          }
+          return item;
+        });
+        pipeline.sink("write", 1, parsed, written::add);
+        return assertThrows(RuntimeException.class, () -> pipeline.await(100));
+      }
+    });
+    // The failed items are dropped, and every other item still completes.
+    assertEquals(ITEMS.size() - 2, written.size());
+    assertEquals(1, thrown.getSuppressed().length);
+    final var suppressed = thrown.getSuppressed()[0];
+    if (thrown == failure) {
+      assertEquals("failed 9", suppressed.getMessage());
+    } else {
+      assertEquals("failed 9", thrown.getMessage());
+      assertSame(failure, suppressed);
+    }
+  }
+
+  @Test
+  void failingSink() {
+    assertTimeoutPreemptively(TIMEOUT, () -> {
+      try (final var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        final var pipeline = new GenerationPipeline(executor, 1);
+        pipeline.sink("write", 1, pipeline.source(ITEMS), _ -> {
+          throw new IllegalStateException("disk full");
+        });
+        final var thrown = assertThrows(IllegalStateException.class, () -> pipeline.await(100));
+        assertEquals("disk full", thrown.getMessage());
+        assertEquals(ITEMS.size() - 1, thrown.getSuppressed().length);
+      }
+    });
+  }
+}
@@ -0,0 +1,60 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class InstructionSourceTests {
+
+  private static String idl(final String depositDiscriminator, final String closeDiscriminator) {
+    return String.format("""
+        {
+          "address": "11111111111111111111111111111111",
+          "metadata": {"name": "custom_test", "version": "0.1.0", "spec": "0.1.0"},
+          "instructions": [
+            {
+              "name": "deposit",
+              %s
+              "accounts": [{"name": "owner", "writable": true, "signer": true}],
+              "args": [{"name": "amount", "type": "u64"}]
+            },
+            {
+              "name": "close",
+              %s
+              "accounts": [{"name": "owner", "writable": true, "signer": true}],
+              "args": []
+            }
+          ],
+          "accounts": [],
+          "types": [],
+          "events": [],
+          "errors": []
+        }
+        """, depositDiscriminator, closeDiscriminator);
+  }
+
+  private static String generateProgram(final String idl) {
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.custom", AnchorIDL.parseIDL(idl.getBytes(UTF_8)), GenSrcOptions.DEFAULT
+    );
+    return sources.get("test/custom/CustomTestProgram.java");
+  }
+
+  @Test
+  void shortDiscriminators() {
+    final var program = generateProgram(idl("\"discriminator\": [1],", "\"discriminator\": [2],"));
+    assertTrue(program.contains("DEPOSIT_DISCRIMINATOR = toDiscriminator(1);"), program);
+    assertTrue(program.contains("if (discriminatorEquals(data, offset, length, DEPOSIT_DISCRIMINATOR)) {"), program);
+    assertTrue(program.contains("if (discriminatorEquals(data, offset, length, CLOSE_DISCRIMINATOR)) {"), program);
+    assertFalse(program.contains("getInt64LE(data, offset)"), program);
+  }
+
+  @Test
+  void longDiscriminators() {
+    final var program = generateProgram(idl("", ""));
+    assertTrue(program.contains("final long discriminator = getInt64LE(data, offset);"), program);
+    assertFalse(program.contains("discriminatorEquals("), program);
+  }
+}
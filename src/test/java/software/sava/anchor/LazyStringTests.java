@@ -0,0 +1,90 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class LazyStringTests {
+
+  @Test
+  void readWrite() {
+    final var symbol = LazyString.of("SOL-PERP \u2713");
+    assertEquals(4 + symbol.length(), symbol.l());
+
+    final byte[] data = new byte[2 + symbol.l()];
+    assertEquals(symbol.l(), symbol.write(data, 2));
+
+    final var read = LazyString.read(data, 2);
+    assertEquals(symbol, read);
+    assertEquals(symbol.hashCode(), read.hashCode());
+    assertEquals("SOL-PERP \u2713", read.toString());
+    assertSame(read.toString(), read.toString());
+    assertArrayEquals(symbol.toByteArray(), read.toByteArray());
+  }
+
+  @Test
+  void intern() {
+    final var symbol = LazyString.of("BTC");
+    final byte[] data = new byte[symbol.l() << 1];
+    symbol.write(data, 0);
+    symbol.write(data, symbol.l());
+
+    final var interned = LazyString.intern(data, 0);
+    assertEquals(symbol, interned);
+    assertSame(interned, LazyString.intern(data, symbol.l()));
+    assertNotSame(interned, LazyString.read(data, symbol.l()));
+  }
+
+  @Test
+  void writeOptional() {
+    final byte[] data = new byte[16];
+    assertEquals(1, LazyString.writeOptional(null, data, 0));
+    assertEquals(0, data[0]);
+
+    final var symbol = LazyString.of("ETH");
+    assertEquals(1 + symbol.l(), LazyString.writeOptional(symbol, data, 0));
+    assertEquals(1, data[0]);
+    assertEquals(symbol, LazyString.read(data, 1));
+    assertNull(LazyString.of(null));
+  }
+
+  @Test
+  void instructionArgsAreNotLazy() {
+    final var idl = """
+        {
+          "address": "11111111111111111111111111111111",
+          "version": "0.1.0",
+          "name": "lazy_test",
+          "instructions": [
+            {
+              "name": "setName",
+              "accounts": [{"name": "authority", "isMut": false, "isSigner": true}],
+              "args": [
+                {"name": "name", "type": "string"},
+                {"name": "memo", "type": {"option": "string"}}
+              ]
+            }
+          ],
+          "accounts": [],
+          "types": [],
+          "events": [],
+          "errors": []
+        }
+        """;
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.lazy", AnchorIDL.parseIDL(idl.getBytes(UTF_8)), GenSrcOptions.DEFAULT.withLazyStrings(true)
+    );
+    final var program = sources.get("test/lazy/LazyTestProgram.java");
+    final var factory = program.substring(0, program.indexOf("record SetNameIxData"));
+    assertTrue(factory.contains("final byte[] _name = name.getBytes(UTF_8);"), factory);
+    assertTrue(factory.contains("i += Borsh.writeVector(_name, _data, i);"), factory);
+    assertTrue(factory.contains("Borsh.writeOptionalVector(_memo, _data, i);"), factory);
+    assertTrue(!factory.contains("_name.write(") && !factory.contains("LazyString.writeOptional("), factory);
+  }
+}
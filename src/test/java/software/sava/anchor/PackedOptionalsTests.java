@@ -0,0 +1,159 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Generates a type with more optional primitives than fit in one byte of the _present bitset, then compiles and runs
+// the generated sources with the source launcher to check that some present and some absent fields round trip.
+final class PackedOptionalsTests {
+
+  private static final String IDL = """
+      {
+        "address": "11111111111111111111111111111111",
+        "version": "0.1.0",
+        "name": "packed_test",
+        "instructions": [],
+        "accounts": [],
+        "types": [
+          {
+            "name": "Packed",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "flag", "type": {"option": "bool"}},
+                {"name": "v1", "type": {"option": "u8"}},
+                {"name": "v2", "type": {"option": "u16"}},
+                {"name": "v3", "type": {"option": "u32"}},
+                {"name": "v4", "type": {"option": "u64"}},
+                {"name": "v5", "type": {"option": "i64"}},
+                {"name": "v6", "type": {"option": "u32"}},
+                {"name": "v7", "type": {"option": "u32"}},
+                {"name": "v8", "type": {"option": "u32"}},
+                {"name": "v9", "type": {"option": "u64"}},
+                {"name": "fee", "type": {"option": "u16"}},
+                {"name": "has_fee", "type": "bool"}
+              ]
+            }
+          }
+        ],
+        "events": [],
+        "errors": []
+      }
+      """;
+
+  private static final String ROUND_TRIP = """
+      package test.packed.types;
+
+      import java.nio.ByteBuffer;
+      import java.util.Arrays;
+      import java.util.function.Consumer;
+
+      import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+      public final class RoundTrip {
+
+        private static void check(final boolean condition, final String message) {
+          if (!condition) {
+            throw new AssertionError(message);
+          }
+        }
+
+        private static void optional(final ByteBuffer buffer, final boolean present, final Consumer<ByteBuffer> value) {
+          if (present) {
+            value.accept(buffer.put((byte) 1));
+          } else {
+            buffer.put((byte) 0);
+          }
+        }
+
+        private static byte[] encode(final boolean[] present) {
+          final var buffer = ByteBuffer.allocate(128).order(LITTLE_ENDIAN);
+          optional(buffer, present[0], b -> b.put((byte) 1));
+          optional(buffer, present[1], b -> b.put((byte) 7));
+          optional(buffer, present[2], b -> b.putShort((short) 513));
+          optional(buffer, present[3], b -> b.putInt(70_000));
+          optional(buffer, present[4], b -> b.putLong(-2));
+          optional(buffer, present[5], b -> b.putLong(-3));
+          optional(buffer, present[6], b -> b.putInt(6));
+          optional(buffer, present[7], b -> b.putInt(7));
+          optional(buffer, present[8], b -> b.putInt(8));
+          optional(buffer, present[9], b -> b.putLong(Long.MAX_VALUE));
+          optional(buffer, true, b -> b.putShort((short) 300));
+          buffer.put((byte) 1);
+          return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+
+        private static void roundTrip(final boolean[] present) {
+          final byte[] data = encode(present);
+          final var packed = Packed.read(data, 0);
+          final var pattern = Arrays.toString(present);
+
+          final boolean[] has = {
+              packed.hasFlag(), packed.hasV1(), packed.hasV2(), packed.hasV3(), packed.hasV4(),
+              packed.hasV5(), packed.hasV6(), packed.hasV7(), packed.hasV8(), packed.hasV9()
+          };
+          check(Arrays.equals(present, has), pattern + " has accessors");
+          long bits = 0;
+          for (int i = 0; i < present.length; ++i) {
+            if (present[i]) {
+              bits |= 1L << i;
+            }
+          }
+          check(packed._present() == bits, pattern + " _present");
+
+          check(packed.flag() == present[0], pattern + " flag");
+          check(packed.v1() == (present[1] ? 7 : 0), pattern + " v1");
+          check(packed.v2() == (present[2] ? 513 : 0), pattern + " v2");
+          check(packed.v3() == (present[3] ? 70_000 : 0), pattern + " v3");
+          check(packed.v4() == (present[4] ? -2 : 0), pattern + " v4");
+          check(packed.v5() == (present[5] ? -3 : 0), pattern + " v5");
+          check(packed.v6() == (present[6] ? 6 : 0), pattern + " v6");
+          check(packed.v7() == (present[7] ? 7 : 0), pattern + " v7");
+          check(packed.v8() == (present[8] ? 8 : 0), pattern + " v8");
+          check(packed.v9() == (present[9] ? Long.MAX_VALUE : 0), pattern + " v9");
+          // fee keeps its Optional encoding, so its presence does not clash with the has_fee field.
+          check(packed.fee().getAsInt() == 300, pattern + " fee");
+          check(packed.hasFee(), pattern + " hasFee");
+
+          check(packed.l() == data.length, pattern + " length");
+          final byte[] written = new byte[data.length];
+          check(packed.write(written, 0) == data.length, pattern + " write length");
+          check(Arrays.equals(data, written), pattern + " write");
+        }
+
+        public static void main(final String[] args) {
+          // Bits 8 and 9 cross into the second byte of the bitset.
+          roundTrip(new boolean[]{true, false, true, false, true, false, false, true, true, false});
+          roundTrip(new boolean[]{false, true, false, true, false, true, true, false, false, true});
+          roundTrip(new boolean[10]);
+          final boolean[] all = new boolean[10];
+          Arrays.fill(all, true);
+          roundTrip(all);
+        }
+      }
+      """;
+
+  @Test
+  void roundTrip(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.packed",
+        AnchorIDL.parseIDL(IDL.getBytes(UTF_8)),
+        GenSrcOptions.DEFAULT.withPackedOptionals(true)
+    );
+    final var packed = sources.get("test/packed/types/Packed.java");
+    assertTrue(packed.contains("long _present"), packed);
+    assertTrue(packed.contains("public boolean hasV9() {"), packed);
+    assertTrue(packed.contains("(_present & (1L << 9)) != 0"), packed);
+    assertTrue(packed.contains("OptionalInt fee"), packed);
+    assertFalse(packed.contains("public boolean hasFee() {"), packed);
+
+    GeneratedSources.run(sourceDirectory, sources, "test/packed/types/RoundTrip.java", ROUND_TRIP);
+  }
+}
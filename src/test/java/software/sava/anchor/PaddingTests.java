@@ -0,0 +1,144 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Generates an account with [u8; N] and [u64; N] padding fields in each padding mode, then compiles and runs the
+// generated sources with the source launcher to check what the byte array and MemorySegment codecs write over them.
+final class PaddingTests {
+
+  private static final String IDL = """
+      {
+        "address": "11111111111111111111111111111111",
+        "version": "0.1.0",
+        "name": "padding_test",
+        "instructions": [],
+        "accounts": [
+          {
+            "name": "Pool",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "authority", "type": "publicKey"},
+                {"name": "padding", "type": {"array": ["u8", 5]}},
+                {"name": "amount", "type": "u64"},
+                {"name": "reserved", "type": {"array": ["u64", 2]}}
+              ]
+            }
+          }
+        ],
+        "types": [],
+        "events": [],
+        "errors": []
+      }
+      """;
+
+  // Written over bytes which are all 0xFF, padding is either copied from the data read, zeroed or left untouched.
+  private static final String ROUND_TRIP = """
+      package test.padding.%s.types;
+
+      import java.lang.foreign.MemorySegment;
+      import java.util.Arrays;
+      import java.util.Random;
+
+      import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+      public final class RoundTrip {
+
+        private static final String MODE = "%s";
+
+        private static void check(final boolean condition, final String message) {
+          if (!condition) {
+            throw new AssertionError(MODE + ' ' + message);
+          }
+        }
+
+        private static boolean isPadding(final int i) {
+          return (i >= Pool.PADDING_OFFSET && i < Pool.PADDING_OFFSET + 5)
+              || (i >= Pool.RESERVED_OFFSET && i < Pool.RESERVED_OFFSET + 16);
+        }
+
+        private static void checkWritten(final byte[] data, final byte[] written, final String codec) {
+          for (int i = 0; i < data.length; ++i) {
+            byte expected = data[i];
+            if (isPadding(i) && !MODE.equals("KEEP")) {
+              expected = MODE.equals("ZERO") ? 0 : (byte) -1;
+            }
+            check(written[i] == expected, codec + " byte " + i);
+          }
+        }
+
+        public static void main(final String[] args) {
+          final byte[] data = new byte[Pool.BYTES];
+          new Random(7).nextBytes(data);
+          final var pool = Pool.read(data, 0);
+          check(pool.l() == Pool.BYTES, "length");
+
+          final byte[] written = new byte[Pool.BYTES];
+          Arrays.fill(written, (byte) -1);
+          check(pool.write(written, 0) == Pool.BYTES, "write length");
+          checkWritten(data, written, "byte[]");
+
+          final var segment = MemorySegment.ofArray(new byte[Pool.BYTES]);
+          segment.fill((byte) -1);
+          check(pool.write(segment, 0) == Pool.BYTES, "segment write length");
+          checkWritten(data, segment.toArray(JAVA_BYTE), "segment");
+          check(Pool.read(segment, 0).amount() == pool.amount(), "segment read");
+        }
+      }
+      """;
+
+  private static void roundTrip(final Path sourceDirectory,
+                                final GenSrcOptions.Padding padding) throws IOException, InterruptedException {
+    final var modePackage = padding.name().toLowerCase(Locale.ENGLISH);
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.padding." + modePackage,
+        AnchorIDL.parseIDL(IDL.getBytes(UTF_8)),
+        GenSrcOptions.DEFAULT.withPadding(padding)
+    );
+    final var pool = sources.get("test/padding/" + modePackage + "/types/Pool.java");
+    final boolean kept = padding == GenSrcOptions.Padding.KEEP;
+    assertTrue(pool.contains("public static final int PADDING_OFFSET = 40;"), pool);
+    assertTrue(pool.contains("public static final int RESERVED_OFFSET = 53;"), pool);
+    // Skipped padding is not a record component.
+    assertTrue(kept == pool.contains("byte[] padding"), pool);
+    assertTrue(kept == pool.contains("long[] reserved"), pool);
+    final boolean zeroed = padding == GenSrcOptions.Padding.ZERO;
+    assertTrue(zeroed == pool.contains("Arrays.fill(_data, i, i + 5, (byte) 0);"), pool);
+    assertTrue(zeroed == pool.contains("Arrays.fill(_data, i, i + 16, (byte) 0);"), pool);
+    assertTrue(zeroed == pool.contains("segment.asSlice(offset + 40, 5).fill((byte) 0);"), pool);
+    if (!kept) {
+      assertTrue(pool.contains("i += 5;"), pool);
+      assertTrue(pool.contains("i += 16;"), pool);
+    }
+
+    GeneratedSources.run(
+        sourceDirectory,
+        sources,
+        "test/padding/" + modePackage + "/types/RoundTrip.java",
+        ROUND_TRIP.formatted(modePackage, padding.name())
+    );
+  }
+
+  @Test
+  void keep(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    roundTrip(sourceDirectory, GenSrcOptions.Padding.KEEP);
+  }
+
+  @Test
+  void zero(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    roundTrip(sourceDirectory, GenSrcOptions.Padding.ZERO);
+  }
+
+  @Test
+  void preserve(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    roundTrip(sourceDirectory, GenSrcOptions.Padding.PRESERVE);
+  }
+}
@@ -0,0 +1,66 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+final class ProgramLogsTests {
+
+  @Test
+  void decodeBase64() {
+    final byte[] buffer = new byte[16];
+    int length = ProgramLogs.decodeBase64("Program data: AQID+vv8/Q==", ProgramLogs.PROGRAM_DATA.length(), buffer);
+    assertArrayEquals(new byte[]{1, 2, 3, (byte) 250, (byte) 251, (byte) 252, (byte) 253}, Arrays.copyOf(buffer, length));
+
+    length = ProgramLogs.decodeBase64("aGVsbG8gd29ybGQh", 0, buffer);
+    assertEquals("hello world!", new String(buffer, 0, length));
+
+    length = ProgramLogs.decodeBase64("YWI=", 0, buffer);
+    assertEquals("ab", new String(buffer, 0, length));
+
+    assertEquals(-1, ProgramLogs.decodeBase64("YW I=", 0, buffer));
+  }
+
+  @Test
+  void forEachProgramData() {
+    final var logMessages = List.of(
+        "Program ComputeBudget111111111111111111111111111111 invoke [1]",
+        "Program ComputeBudget111111111111111111111111111111 success",
+        "Program dRiftyHA39MWEi3m9aunc5MzRF1JYuBsbn6VPcn33UH invoke [1]",
+        "Program log: Instruction: PlacePerpOrder",
+        "Program data: YWI=",
+        "Program TokenkegQfeZyiNwAJbNbGKPFXCWuBvf9Ss623VQ5DA invoke [2]",
+        "Program data: YWM=",
+        "Program TokenkegQfeZyiNwAJbNbGKPFXCWuBvf9Ss623VQ5DA success",
+        "Program data: aGVsbG8gd29ybGQh",
+        "Program dRiftyHA39MWEi3m9aunc5MzRF1JYuBsbn6VPcn33UH consumed 5000 of 200000 compute units",
+        "Program dRiftyHA39MWEi3m9aunc5MzRF1JYuBsbn6VPcn33UH success",
+        "Program data: YWQ="
+    );
+    final var decoded = new ArrayList<String>();
+    final byte[] buffer = ProgramLogs.forEachProgramData(
+        "dRiftyHA39MWEi3m9aunc5MzRF1JYuBsbn6VPcn33UH",
+        logMessages,
+        null,
+        (data, length) -> decoded.add(new String(data, 0, length))
+    );
+    assertEquals(List.of("ab", "hello world!"), decoded);
+    assertNotNull(buffer);
+
+    decoded.clear();
+    assertSame(buffer, ProgramLogs.forEachProgramData(
+        "TokenkegQfeZyiNwAJbNbGKPFXCWuBvf9Ss623VQ5DA",
+        logMessages,
+        buffer,
+        (data, length) -> decoded.add(new String(data, 0, length))
+    ));
+    assertEquals(List.of("ac"), decoded);
+  }
+}
@@ -0,0 +1,48 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class RpcSchedulerTests {
+
+  @Test
+  void adaptRate() {
+    final var scheduler = new RpcScheduler("test", 10, 20, 8);
+    assertEquals(10, scheduler.rate());
+    assertEquals(8, scheduler.inFlightLimit());
+
+    scheduler.onFailure(true);
+    assertEquals(5, scheduler.rate());
+    assertEquals(4, scheduler.inFlightLimit());
+
+    scheduler.onFailure(false);
+    assertEquals(3.75, scheduler.rate());
+    assertEquals(4, scheduler.inFlightLimit());
+
+    for (int i = 0; i < 4; ++i) {
+      scheduler.onSuccess();
+    }
+    assertEquals(5.75, scheduler.rate(), 0.000_001);
+    assertEquals(5, scheduler.inFlightLimit());
+
+    for (int i = 0; i < 1_000; ++i) {
+      scheduler.onSuccess();
+    }
+    assertEquals(20, scheduler.rate());
+    assertEquals(8, scheduler.inFlightLimit());
+  }
+
+  @Test
+  void detectThrottling() {
+    assertTrue(RpcScheduler.isThrottled(new CompletionException(new HttpStatusException("HTTP status 429.", 429))));
+    assertFalse(RpcScheduler.isThrottled(new HttpStatusException("HTTP status 503.", 503)));
+    assertFalse(RpcScheduler.isThrottled(new RuntimeException("Too Many Requests")));
+    assertFalse(RpcScheduler.isThrottled(new RuntimeException("Slot 314294290 was skipped.")));
+    assertFalse(RpcScheduler.isThrottled(new RuntimeException("Connection reset")));
+  }
+}
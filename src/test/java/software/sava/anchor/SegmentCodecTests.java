@@ -0,0 +1,139 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.sava.core.encoding.ByteUtil;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Generates a fixed size account with scalar, array and nested struct fields, then compiles and runs the generated
+// sources with the source launcher to check that the LAYOUT, VarHandles and MemorySegment codecs round trip with the
+// Borsh codecs.
+final class SegmentCodecTests {
+
+  private static final String IDL = """
+      {
+        "address": "11111111111111111111111111111111",
+        "version": "0.1.0",
+        "name": "segment_test",
+        "instructions": [],
+        "accounts": [
+          {
+            "name": "Pool",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "authority", "type": "publicKey"},
+                {"name": "bump", "type": "u8"},
+                {"name": "enabled", "type": "bool"},
+                {"name": "fee", "type": "u16"},
+                {"name": "total", "type": "u128"},
+                {"name": "amounts", "type": {"array": ["u64", 3]}},
+                {"name": "flags", "type": {"array": ["bool", 2]}},
+                {"name": "keys", "type": {"array": ["publicKey", 2]}},
+                {"name": "positions", "type": {"array": [{"defined": "Position"}, 2]}},
+                {"name": "position", "type": {"defined": "Position"}},
+                {"name": "padding", "type": {"array": ["u8", 5]}}
+              ]
+            }
+          }
+        ],
+        "types": [
+          {
+            "name": "Position",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "base", "type": "i64"},
+                {"name": "price", "type": "f64"},
+                {"name": "market", "type": "u16"},
+                {"name": "weights", "type": {"array": ["i32", 2]}}
+              ]
+            }
+          }
+        ],
+        "events": [],
+        "errors": []
+      }
+      """;
+
+  private static final String ROUND_TRIP = """
+      package test.segment.types;
+
+      import java.lang.foreign.MemoryLayout.PathElement;
+      import java.lang.foreign.MemorySegment;
+      import java.util.Arrays;
+      import java.util.Random;
+
+      import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+
+      public final class RoundTrip {
+
+        private static void check(final boolean condition, final String message) {
+          if (!condition) {
+            throw new AssertionError(message);
+          }
+        }
+
+        public static void main(final String[] args) {
+          check(Pool.LAYOUT.byteSize() == Pool.BYTES, "Pool LAYOUT size");
+          check(Position.LAYOUT.byteSize() == Position.BYTES, "Position LAYOUT size");
+
+          final byte[] data = new byte[Pool.BYTES];
+          new Random(7).nextBytes(data);
+          // Booleans only round trip as 0 or 1.
+          data[Pool.ENABLED_OFFSET] = 1;
+          data[Pool.FLAGS_OFFSET] = 0;
+          data[Pool.FLAGS_OFFSET + 1] = 1;
+
+          final var pool = Pool.read(data, 0);
+          final var segment = MemorySegment.ofArray(new byte[Pool.BYTES]);
+          check(pool.write(segment, 0) == Pool.BYTES, "segment write length");
+          check(Arrays.equals(data, segment.toArray(JAVA_BYTE)), "segment write");
+
+          final byte[] written = new byte[Pool.BYTES];
+          Pool.read(segment, 0).write(written, 0);
+          check(Arrays.equals(data, written), "segment read");
+
+          final var fee = Pool.LAYOUT.varHandle(PathElement.groupElement("fee"));
+          check((short) fee.get(segment, 0L) == (short) pool.fee(), "fee VarHandle");
+          final var amount = Pool.LAYOUT.varHandle(PathElement.groupElement("amounts"), PathElement.sequenceElement(1));
+          check((long) amount.get(segment, 0L) == pool.amounts()[1], "amounts VarHandle");
+          final var market = Pool.LAYOUT.varHandle(
+              PathElement.groupElement("positions"),
+              PathElement.sequenceElement(1),
+              PathElement.groupElement("market")
+          );
+          check((short) market.get(segment, 0L) == (short) pool.positions()[1].market(), "nested VarHandle");
+        }
+      }
+      """;
+
+  @Test
+  void roundTrip(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.segment", AnchorIDL.parseIDL(IDL.getBytes(UTF_8)), GenSrcOptions.DEFAULT
+    );
+    final var pool = sources.get("test/segment/types/Pool.java");
+    assertTrue(pool.contains("MemoryLayout.sequenceLayout(3, JAVA_LONG_UNALIGNED.withOrder(LITTLE_ENDIAN)).withName(\"amounts\")"), pool);
+    assertTrue(pool.contains("MemoryLayout.sequenceLayout(2, Position.LAYOUT).withName(\"positions\")"), pool);
+    // Keys and wide integers are copied and read in long words, without slicing the segment into scratch arrays.
+    assertTrue(pool.contains("readPublicKey(segment, offset + 8)"), pool);
+    assertTrue(pool.contains("readWideInteger(segment, offset + 44, 16)"), pool);
+    assertTrue(pool.contains("writeWideInteger(segment, offset + 44, 16, total);"), pool);
+    assertFalse(pool.contains("toArray(JAVA_BYTE)"), pool);
+    // The IDL does not declare account discriminators, they are derived from the account name.
+    final long discriminator = ByteUtil.getInt64LE(AnchorUtil.toAccountDiscriminator("Pool").data(), 0);
+    assertTrue(pool.contains(String.format("DISCRIMINATOR_LONG = 0x%016XL;", discriminator)), pool);
+    assertTrue(pool.contains("public static boolean isPool(final byte[] _data, final int offset) {"), pool);
+    final var accounts = sources.get("test/segment/SegmentTestAccounts.java");
+    assertTrue(accounts.contains("Pool.DISCRIMINATOR_LONG"), accounts);
+
+    GeneratedSources.run(sourceDirectory, sources, "test/segment/types/RoundTrip.java", ROUND_TRIP);
+  }
+}
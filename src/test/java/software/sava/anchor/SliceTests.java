@@ -0,0 +1,172 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Generates a type with bytes, Vec<u8>, [u8; N] and [u64; N] fields in each slice mode, then compiles and runs the
+// generated sources with the source launcher to check that the fields round trip, and that only the slice modes
+// are read-only views over the data they were read from.
+final class SliceTests {
+
+  private static final String IDL = """
+      {
+        "address": "11111111111111111111111111111111",
+        "version": "0.1.0",
+        "name": "slice_test",
+        "instructions": [],
+        "accounts": [],
+        "types": [
+          {
+            "name": "Blob",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "header", "type": "u16"},
+                {"name": "payload", "type": "bytes"},
+                {"name": "buf", "type": {"vec": "u8"}},
+                {"name": "raw", "type": {"array": ["u8", 4]}},
+                {"name": "words", "type": {"array": ["u64", 3]}},
+                {"name": "tail", "type": "u32"}
+              ]
+            }
+          }
+        ],
+        "events": [],
+        "errors": []
+      }
+      """;
+
+  // Fields are accessed as Objects so that the same checks compile against each mode's field types.
+  private static final String ROUND_TRIP = """
+      package test.slice.%s.types;
+
+      import java.lang.foreign.MemorySegment;
+      import java.nio.ByteBuffer;
+      import java.nio.LongBuffer;
+      import java.util.Arrays;
+
+      import static java.lang.foreign.ValueLayout.JAVA_LONG_UNALIGNED;
+      import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+      public final class RoundTrip {
+
+        private static final String MODE = "%s";
+        private static final int RAW_OFFSET = 2 + 4 + 3 + 4 + 2;
+
+        private static void check(final boolean condition, final String message) {
+          if (!condition) {
+            throw new AssertionError(MODE + ' ' + message);
+          }
+        }
+
+        private static byte[] encode() {
+          final var buffer = ByteBuffer.allocate(64).order(LITTLE_ENDIAN);
+          buffer.putShort((short) 7);
+          buffer.putInt(3).put(new byte[]{1, 2, 3});
+          buffer.putInt(2).put(new byte[]{4, 5});
+          buffer.put(new byte[]{6, 7, 8, 9});
+          buffer.putLong(10).putLong(-11).putLong(Long.MAX_VALUE);
+          buffer.putInt(12);
+          return Arrays.copyOf(buffer.array(), buffer.position());
+        }
+
+        private static int length(final Object slice) {
+          return switch (slice) {
+            case byte[] bytes -> bytes.length;
+            case long[] longs -> longs.length << 3;
+            case ByteBuffer buffer -> buffer.isReadOnly() ? buffer.capacity() : -1;
+            case LongBuffer buffer -> buffer.isReadOnly() ? buffer.capacity() << 3 : -1;
+            case MemorySegment segment -> segment.isReadOnly() ? (int) segment.byteSize() : -1;
+            default -> throw new AssertionError(MODE + " unexpected slice " + slice);
+          };
+        }
+
+        private static long word(final Object words, final int i) {
+          return switch (words) {
+            case long[] longs -> longs[i];
+            case LongBuffer buffer -> buffer.get(i);
+            case MemorySegment segment -> segment.get(JAVA_LONG_UNALIGNED.withOrder(LITTLE_ENDIAN), (long) i << 3);
+            default -> throw new AssertionError(MODE + " unexpected words " + words);
+          };
+        }
+
+        public static void main(final String[] args) {
+          final byte[] data = encode();
+          final var blob = Blob.read(data, 0);
+          check(blob.header() == 7 && blob.tail() == 12, "header and tail");
+          check(length(blob.payload()) == 3, "payload");
+          check(length(blob.buf()) == 2, "buf");
+          check(length(blob.raw()) == 4, "raw");
+          check(length(blob.words()) == 24, "words");
+          check(word(blob.words(), 0) == 10, "words 0");
+          check(word(blob.words(), 1) == -11, "words 1");
+          check(word(blob.words(), 2) == Long.MAX_VALUE, "words 2");
+          check(blob.l() == data.length, "length");
+
+          final byte[] written = new byte[data.length];
+          check(blob.write(written, 0) == data.length, "write length");
+          check(Arrays.equals(data, written), "write");
+
+          // Copies are unaffected by later changes to the data, views reflect them.
+          data[RAW_OFFSET] = 99;
+          blob.write(written, 0);
+          check(written[RAW_OFFSET] == (MODE.equals("COPY") ? 6 : 99), "view");
+        }
+      }
+      """;
+
+  private static void roundTrip(final Path sourceDirectory,
+                                final GenSrcOptions.Slices slices,
+                                final String... expectedFields) throws IOException, InterruptedException {
+    final var modePackage = slices.name().toLowerCase(Locale.ENGLISH);
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.slice." + modePackage,
+        AnchorIDL.parseIDL(IDL.getBytes(UTF_8)),
+        GenSrcOptions.DEFAULT.withSlices(slices)
+    );
+    final var blob = sources.get("test/slice/" + modePackage + "/types/Blob.java");
+    for (final var expectedField : expectedFields) {
+      assertTrue(blob.contains(expectedField), blob);
+    }
+
+    GeneratedSources.run(
+        sourceDirectory,
+        sources,
+        "test/slice/" + modePackage + "/types/RoundTrip.java",
+        ROUND_TRIP.formatted(modePackage, slices.name())
+    );
+  }
+
+  @Test
+  void copy(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    roundTrip(
+        sourceDirectory, GenSrcOptions.Slices.COPY,
+        "byte[] payload", "byte[] buf", "byte[] raw", "long[] words"
+    );
+  }
+
+  @Test
+  void buffer(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    roundTrip(
+        sourceDirectory, GenSrcOptions.Slices.BUFFER,
+        "ByteBuffer payload", "ByteBuffer buf", "ByteBuffer raw", "LongBuffer words",
+        "ByteBuffer.wrap(_data).slice(i, 24).asReadOnlyBuffer().order(LITTLE_ENDIAN).asLongBuffer()"
+    );
+  }
+
+  @Test
+  void segment(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    roundTrip(
+        sourceDirectory, GenSrcOptions.Slices.SEGMENT,
+        "MemorySegment payload", "MemorySegment buf", "MemorySegment raw", "MemorySegment words",
+        "MemorySegment.ofArray(_data).asSlice(i, 24).asReadOnly()"
+    );
+  }
+}
@@ -0,0 +1,93 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class SourceFileWriterTests {
+
+  private static final FileTime PAST = FileTime.from(Instant.parse("2020-01-01T00:00:00Z"));
+
+  private static Path write(final Path file, final String content) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content);
+    Files.setLastModifiedTime(file, PAST);
+    return file;
+  }
+
+  @Test
+  void sync(@TempDir final Path sourceDirectory) throws IOException {
+    final var packageDirectory = sourceDirectory.resolve("test/program");
+    final var unchanged = write(packageDirectory.resolve("Unchanged.java"), "unchanged");
+    final var changed = write(packageDirectory.resolve("Changed.java"), "before");
+    final var stale = write(packageDirectory.resolve("Stale.java"), "stale");
+    final var staleType = write(packageDirectory.resolve("types/Old.java"), "old");
+    final var otherPackage = write(sourceDirectory.resolve("test/other/Other.java"), "other");
+    final var moduleInfo = write(sourceDirectory.resolve("module-info.java"), "module test {}");
+
+    final var writer = new SourceFileWriter(sourceDirectory, packageDirectory, true);
+    writer.prepare();
+    writer.accept("test/program/Unchanged.java", "unchanged");
+    writer.accept("test/program/Changed.java", "after");
+    writer.accept("test/program/types/New.java", "new");
+    final var generated = writer.finish();
+
+    assertEquals(List.of(changed, unchanged, packageDirectory.resolve("types/New.java")), generated);
+    // Unchanged files are not re-written, so their modification time is preserved.
+    assertEquals(PAST, Files.getLastModifiedTime(unchanged));
+    assertEquals("after", Files.readString(changed));
+    assertNotEquals(PAST, Files.getLastModifiedTime(changed));
+    assertEquals("new", Files.readString(packageDirectory.resolve("types/New.java")));
+
+    // Stale files of the program package are deleted, everything outside it is left alone.
+    assertFalse(Files.exists(stale));
+    assertFalse(Files.exists(staleType));
+    assertTrue(Files.exists(packageDirectory.resolve("types")));
+    assertEquals("other", Files.readString(otherPackage));
+    assertEquals(PAST, Files.getLastModifiedTime(otherPackage));
+    assertEquals("module test {}", Files.readString(moduleInfo));
+  }
+
+  @Test
+  void syncDeletesEmptyDirectories(@TempDir final Path sourceDirectory) throws IOException {
+    final var packageDirectory = sourceDirectory.resolve("test/program");
+    write(packageDirectory.resolve("types/Old.java"), "old");
+
+    final var writer = new SourceFileWriter(sourceDirectory, packageDirectory, true);
+    writer.prepare();
+    writer.accept("test/program/Program.java", "program");
+    writer.finish();
+
+    assertFalse(Files.exists(packageDirectory.resolve("types")));
+    assertTrue(Files.exists(packageDirectory.resolve("Program.java")));
+  }
+
+  @Test
+  void rewrite(@TempDir final Path sourceDirectory) throws IOException {
+    final var packageDirectory = sourceDirectory.resolve("test/program");
+    final var unchanged = write(packageDirectory.resolve("Unchanged.java"), "unchanged");
+    final var stale = write(packageDirectory.resolve("Stale.java"), "stale");
+    final var otherPackage = write(sourceDirectory.resolve("test/other/Other.java"), "other");
+
+    final var writer = new SourceFileWriter(sourceDirectory, packageDirectory, false);
+    writer.prepare();
+    assertFalse(Files.exists(stale));
+    writer.accept("test/program/Unchanged.java", "unchanged");
+    assertEquals(List.of(unchanged), writer.finish());
+
+    // Without sync every file is re-written.
+    assertNotEquals(PAST, Files.getLastModifiedTime(unchanged));
+    assertEquals("other", Files.readString(otherPackage));
+  }
+}
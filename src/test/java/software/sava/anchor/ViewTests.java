@@ -0,0 +1,148 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Generates views for a fixed length account and its nested types, then compiles and runs the generated sources with
+// the source launcher to check every view accessor against the record read from the same data.
+final class ViewTests {
+
+  private static final String IDL = """
+      {
+        "address": "11111111111111111111111111111111",
+        "version": "0.1.0",
+        "name": "view_test",
+        "instructions": [],
+        "accounts": [
+          {
+            "name": "Pool",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "authority", "type": "publicKey"},
+                {"name": "bump", "type": "u8"},
+                {"name": "enabled", "type": "bool"},
+                {"name": "fee", "type": "u16"},
+                {"name": "total", "type": "u128"},
+                {"name": "amounts", "type": {"array": ["u64", 3]}},
+                {"name": "keys", "type": {"array": ["publicKey", 2]}},
+                {"name": "positions", "type": {"array": [{"defined": "Position"}, 2]}},
+                {"name": "position", "type": {"defined": "Position"}}
+              ]
+            }
+          },
+          {
+            "name": "Registry",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "authority", "type": "publicKey"},
+                {"name": "name", "type": "string"},
+                {"name": "members", "type": {"vec": "publicKey"}}
+              ]
+            }
+          }
+        ],
+        "types": [
+          {
+            "name": "Position",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "base", "type": "i64"},
+                {"name": "price", "type": "f64"},
+                {"name": "market", "type": "u16"}
+              ]
+            }
+          }
+        ],
+        "events": [],
+        "errors": []
+      }
+      """;
+
+  private static final String VIEW_READ = """
+      package test.view.types;
+
+      import java.util.Arrays;
+      import java.util.Random;
+
+      public final class ViewRead {
+
+        private static void check(final boolean condition, final String message) {
+          if (!condition) {
+            throw new AssertionError(message);
+          }
+        }
+
+        private static byte[] data(final long seed) {
+          final byte[] data = new byte[Pool.BYTES];
+          new Random(seed).nextBytes(data);
+          data[Pool.ENABLED_OFFSET] = (byte) (seed & 1);
+          return data;
+        }
+
+        private static void checkView(final PoolView view, final byte[] data) {
+          final var pool = Pool.read(data, 0);
+          check(view.authority().equals(pool.authority()), "authority");
+          check(view.bump() == pool.bump(), "bump");
+          check(view.enabled() == pool.enabled(), "enabled");
+          check(view.fee() == pool.fee(), "fee");
+          check(view.total().equals(pool.total()), "total");
+          for (int i = 0; i < PoolView.AMOUNTS_LEN; ++i) {
+            check(view.amounts(i) == pool.amounts()[i], "amounts " + i);
+          }
+          for (int i = 0; i < PoolView.KEYS_LEN; ++i) {
+            check(view.keys(i).equals(pool.keys()[i]), "keys " + i);
+          }
+          for (int i = 0; i < PoolView.POSITIONS_LEN; ++i) {
+            final var position = view.positions(i);
+            check(position.base() == pool.positions()[i].base(), "positions base " + i);
+            check(position.market() == pool.positions()[i].market(), "positions market " + i);
+            check(position.read().equals(pool.positions()[i]), "positions " + i);
+          }
+          check(view.position().read().equals(pool.position()), "position");
+          check(Double.compare(view.position().price(), pool.position().price()) == 0, "position price");
+          final byte[] written = new byte[Pool.BYTES];
+          view.read().write(written, 0);
+          check(Arrays.equals(data, written), "read");
+        }
+
+        public static void main(final String[] args) {
+          final var view = new PoolView(data(7), 0);
+          checkView(view, data(7));
+          // Re-pointed views read the new data.
+          final byte[] other = data(8);
+          checkView(view.wrap(other), other);
+          try {
+            view.amounts(PoolView.AMOUNTS_LEN);
+            check(false, "amounts index check");
+          } catch (final IndexOutOfBoundsException e) {
+            // expected
+          }
+        }
+      }
+      """;
+
+  @Test
+  void viewAccessors(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.view", AnchorIDL.parseIDL(IDL.getBytes(UTF_8)), GenSrcOptions.DEFAULT
+    );
+    final var poolView = sources.get("test/view/types/PoolView.java");
+    assertTrue(poolView.contains("public PositionView positions(final int i) {"), poolView);
+    assertTrue(sources.containsKey("test/view/types/PositionView.java"));
+    // Fields past a variable length field are not at a fixed offset, so variable length accounts have no view.
+    assertTrue(sources.containsKey("test/view/types/Registry.java"));
+    assertFalse(sources.containsKey("test/view/types/RegistryView.java"));
+
+    GeneratedSources.run(sourceDirectory, sources, "test/view/types/ViewRead.java", VIEW_READ);
+  }
+}
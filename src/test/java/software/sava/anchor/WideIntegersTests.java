@@ -0,0 +1,178 @@
+package software.sava.anchor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class WideIntegersTests {
+
+  private static final GenSrcOptions OPTIONS = GenSrcOptions.DEFAULT.withWideIntegersAsLongs(true);
+
+  private static final String IDL = """
+      {
+        "address": "11111111111111111111111111111111",
+        "version": "0.1.0",
+        "name": "wide_test",
+        "instructions": [],
+        "accounts": [
+          {
+            "name": "Wide",
+            "type": {
+              "kind": "struct",
+              "fields": [
+                {"name": "a", "type": "u128"},
+                {"name": "b", "type": "i128"},
+                {"name": "c", "type": "u256"},
+                {"name": "d", "type": "i256"}
+              ]
+            }
+          }
+        ],
+        "types": [],
+        "events": [],
+        "errors": []
+      }
+      """;
+
+  // Checks the value records against BigInteger at the boundaries of each word and type.
+  private static final String BOUNDARIES = """
+      package test.wide.types;
+
+      import java.math.BigInteger;
+      import java.util.ArrayList;
+      import java.util.List;
+      import java.util.function.Function;
+      import java.util.function.LongFunction;
+      import java.util.function.Predicate;
+      import java.util.function.ToDoubleFunction;
+
+      public final class Boundaries {
+
+        private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+        private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+        private static final BigInteger TWO_64 = BigInteger.ONE.shiftLeft(64);
+
+        private static void check(final boolean condition, final String message) {
+          if (!condition) {
+            throw new AssertionError(message);
+          }
+        }
+
+        private static List<BigInteger> values(final int bits, final boolean signed) {
+          final var values = new ArrayList<>(List.of(
+              BigInteger.ZERO,
+              BigInteger.ONE,
+              LONG_MAX,
+              LONG_MAX.add(BigInteger.ONE),
+              TWO_64.subtract(BigInteger.ONE),
+              TWO_64
+          ));
+          if (signed) {
+            values.add(BigInteger.ONE.shiftLeft(bits - 1).subtract(BigInteger.ONE));
+            values.add(BigInteger.ONE.shiftLeft(bits - 1).negate());
+            values.add(BigInteger.ONE.negate());
+            values.add(LONG_MIN);
+            values.add(LONG_MIN.subtract(BigInteger.ONE));
+            values.add(TWO_64.negate());
+          } else {
+            values.add(BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE));
+          }
+          return values;
+        }
+
+        private static <T extends Comparable<T>> void check(final String type,
+                                                            final List<BigInteger> values,
+                                                            final Function<BigInteger, T> valueOf,
+                                                            final LongFunction<T> valueOfLong,
+                                                            final Function<T, BigInteger> toBigInteger,
+                                                            final Predicate<T> fitsInLong,
+                                                            final ToDoubleFunction<T> doubleValue) {
+          for (final var value : values) {
+            final var wide = valueOf.apply(value);
+            final var message = type + ' ' + value;
+            check(value.equals(toBigInteger.apply(wide)), message + " toBigInteger");
+            check(value.doubleValue() == doubleValue.applyAsDouble(wide), message + " doubleValue");
+            final boolean fits = value.compareTo(LONG_MIN) >= 0 && value.compareTo(LONG_MAX) <= 0;
+            check(fits == fitsInLong.test(wide), message + " fitsInLong");
+            if (fits) {
+              check(wide.equals(valueOfLong.apply(value.longValue())), message + " valueOf(long)");
+            }
+            for (final var other : values) {
+              check(
+                  value.compareTo(other) == Integer.signum(wide.compareTo(valueOf.apply(other))),
+                  message + " compareTo " + other
+              );
+            }
+          }
+        }
+
+        public static void main(final String[] args) {
+          check("U128", values(128, false), U128::valueOf, U128::valueOf, U128::toBigInteger, U128::fitsInLong, U128::doubleValue);
+          check("I128", values(128, true), I128::valueOf, I128::valueOf, I128::toBigInteger, I128::fitsInLong, I128::doubleValue);
+          check("U256", values(256, false), U256::valueOf, U256::valueOf, U256::toBigInteger, U256::fitsInLong, U256::doubleValue);
+          check("I256", values(256, true), I256::valueOf, I256::valueOf, I256::toBigInteger, I256::fitsInLong, I256::doubleValue);
+          check(I128.valueOf(-1).signum() == -1, "I128 signum");
+          check(I256.ZERO.signum() == 0 && I256.ZERO.isZero(), "I256 ZERO");
+        }
+      }
+      """;
+
+  @Test
+  void boundaries(@TempDir final Path sourceDirectory) throws IOException, InterruptedException {
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.wide", AnchorIDL.parseIDL(IDL.getBytes(UTF_8)), OPTIONS
+    );
+    final var wide = sources.get("test/wide/types/Wide.java");
+    assertTrue(wide.contains("U128 a,"), wide);
+    assertTrue(wide.contains("I256 d"), wide);
+    GeneratedSources.run(sourceDirectory, sources, "test/wide/types/Boundaries.java", BOUNDARIES);
+  }
+
+  @Test
+  void nameCollisions() {
+    final var idl = """
+        {
+          "address": "11111111111111111111111111111111",
+          "version": "0.1.0",
+          "name": "wide_test",
+          "instructions": [],
+          "accounts": [
+            {
+              "name": "U128",
+              "type": {
+                "kind": "struct",
+                "fields": [{"name": "total", "type": "u128"}]
+              }
+            }
+          ],
+          "types": [],
+          "events": [
+            {
+              "name": "I128",
+              "fields": [{"name": "delta", "type": "i128", "index": false}]
+            }
+          ],
+          "errors": []
+        }
+        """;
+    final var sources = AnchorSourceGenerator.generateSources(
+        "test.wide", AnchorIDL.parseIDL(idl.getBytes(UTF_8)), OPTIONS
+    );
+    final var account = sources.get("test/wide/types/U128.java");
+    assertTrue(account.contains("WideTestU128 total"), account);
+    assertTrue(sources.containsKey("test/wide/types/WideTestU128.java"));
+
+    final var event = sources.get("test/wide/types/I128.java");
+    assertTrue(event.contains("WideTestI128 delta"), event);
+    assertFalse(event.contains("long lo"), event);
+    assertTrue(sources.containsKey("test/wide/types/WideTestI128.java"));
+    assertNull(sources.get("test/wide/types/U256.java"));
+  }
+}